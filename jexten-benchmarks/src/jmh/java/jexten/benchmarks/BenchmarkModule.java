@@ -0,0 +1,91 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.benchmarks;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+
+import jexten.benchmarks.ext.ScopedExtensionPoint;
+import jexten.plugin.*;
+
+
+final class BenchmarkModule {
+
+	static final String SYNTHETIC_PLUGIN_PROPERTY = "jexten.benchmarks.syntheticPlugin";
+	static final String SYNTHETIC_PLUGIN_MODULE = "jexten.benchmarks.synthetic";
+
+
+	private BenchmarkModule() {
+		/* avoid instantiation */
+	}
+
+
+	/**
+	 * The fixtures must be loaded as a named module of the boot layer, otherwise
+	 * the extension manager would not be able to discover them
+	 */
+	static Module check() {
+		var module = ScopedExtensionPoint.class.getModule();
+		if (!module.isNamed()) {
+			throw new IllegalStateException(
+				"Benchmark fixtures are not in a named module, run with '--add-modules jexten.benchmarks'"
+			);
+		}
+		return module;
+	}
+
+
+	/**
+	 * Create a warehouse folder with the given number of plugins, all of them
+	 * containing the same synthetic module jar but with different identifiers
+	 */
+	static Path createSyntheticWarehouse(int plugins) throws IOException {
+		var property = System.getProperty(SYNTHETIC_PLUGIN_PROPERTY);
+		if (property == null) {
+			throw new IllegalStateException("System property " + SYNTHETIC_PLUGIN_PROPERTY + " not defined");
+		}
+		Path syntheticJar = Path.of(property);
+		Path warehouse = Files.createTempDirectory("jexten-benchmark-warehouse");
+		String application = check().getName();
+		for (int i = 0; i < plugins; i++) {
+			writePluginZipFile(warehouse.resolve("synthetic-" + i + ".zip"), i, application, syntheticJar);
+		}
+		return warehouse;
+	}
+
+
+	static void deleteWarehouse(Path warehouse) throws IOException {
+		try (var walker = Files.walk(warehouse)) {
+			for (var file : walker.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(file);
+			}
+		}
+	}
+
+
+	private static void writePluginZipFile(
+		Path zipFile,
+		int index,
+		String application,
+		Path syntheticJar
+	) throws IOException {
+		var manifest = new LinkedHashMap<String,String>();
+		manifest.put(PluginManifest.PLUGIN_ID, "jexten.benchmarks:synthetic-" + index);
+		manifest.put(PluginManifest.PLUGIN_VERSION, "1.0.0");
+		manifest.put(PluginManifest.PLUGIN_MODULE, SYNTHETIC_PLUGIN_MODULE);
+		manifest.put(PluginManifest.PLUGIN_JAR_FILE, syntheticJar.getFileName().toString());
+		manifest.put(PluginManifest.PLUGIN_APPLICATION_MODULE, application);
+		manifest.put(PluginManifest.PLUGIN_PARENT_MODULE, application);
+		try (var output = new ZipOutputStream(Files.newOutputStream(zipFile))) {
+			output.putNextEntry(new ZipEntry(PluginZipFile.PLUGIN_PROPERTIES_FILE));
+			for (var entry : manifest.entrySet()) {
+				output.write((entry.getKey() + ": " + entry.getValue() + "\n").getBytes());
+			}
+			output.putNextEntry(new ZipEntry(syntheticJar.getFileName().toString()));
+			Files.copy(syntheticJar, output);
+		}
+	}
+
+}
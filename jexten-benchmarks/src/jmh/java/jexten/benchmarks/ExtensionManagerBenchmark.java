@@ -0,0 +1,78 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import jexten.ExtensionManager;
+import jexten.benchmarks.ext.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Lookup of extensions from the boot layer, for each scope and for
+ * extensions with injected dependencies
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExtensionManagerBenchmark {
+
+	private static final Predicate<Class<?>> GLOBAL = type -> type == GlobalExtension.class;
+	private static final Predicate<Class<?>> LOCAL = type -> type == LocalExtension.class;
+	private static final Predicate<Class<?>> TRANSIENT = type -> type == TransientExtension.class;
+
+
+	private ExtensionManager extensionManager;
+
+
+	@Setup
+	public void setup() {
+		BenchmarkModule.check();
+		extensionManager = ExtensionManager.create();
+	}
+
+
+	@Benchmark
+	public ScopedExtensionPoint getGlobalExtension() {
+		return extensionManager.getExtension(ScopedExtensionPoint.class, GLOBAL).orElseThrow();
+	}
+
+
+	@Benchmark
+	public ScopedExtensionPoint getLocalExtension() {
+		return extensionManager.getExtension(ScopedExtensionPoint.class, LOCAL).orElseThrow();
+	}
+
+
+	@Benchmark
+	public ScopedExtensionPoint getTransientExtension() {
+		return extensionManager.getExtension(ScopedExtensionPoint.class, TRANSIENT).orElseThrow();
+	}
+
+
+	@Benchmark
+	public ScopedExtensionPoint getExtensionByName() {
+		return extensionManager.getExtensionByName(ScopedExtensionPoint.class, "transient").orElseThrow();
+	}
+
+
+	@Benchmark
+	public List<ScopedExtensionPoint> getExtensions() {
+		return extensionManager.getExtensions(ScopedExtensionPoint.class).toList();
+	}
+
+
+	@Benchmark
+	public GraphExtensionPoint getInjectedGraph() {
+		return extensionManager.getExtension(GraphExtensionPoint.class).orElseThrow();
+	}
+
+
+	@Benchmark
+	public LoopExtensionPoint getInjectedLoop() {
+		return extensionManager.getExtension(LoopExtensionPoint.class).orElseThrow();
+	}
+
+}
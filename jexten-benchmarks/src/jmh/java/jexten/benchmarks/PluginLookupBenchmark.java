@@ -0,0 +1,58 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import jexten.ExtensionManager;
+import jexten.benchmarks.ext.*;
+import jexten.plugin.PluginStore;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Lookup of extensions through a plugin store with N plugin layers
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PluginLookupBenchmark {
+
+	@Param({"10", "50", "150"})
+	public int plugins;
+
+	private Path warehouse;
+	private ExtensionManager extensionManager;
+
+
+	@Setup
+	public void setup() throws IOException {
+		warehouse = BenchmarkModule.createSyntheticWarehouse(plugins);
+		var pluginStore = PluginStore.builder()
+			.module(BenchmarkModule.check())
+			.warehousePath(warehouse)
+			.build();
+		extensionManager = ExtensionManager.create(pluginStore);
+	}
+
+
+	@TearDown
+	public void tearDown() throws IOException {
+		BenchmarkModule.deleteWarehouse(warehouse);
+	}
+
+
+	@Benchmark
+	public List<PluginExtensionPoint> getPluginExtensions() {
+		return extensionManager.getExtensions(PluginExtensionPoint.class).toList();
+	}
+
+
+	@Benchmark
+	public ScopedExtensionPoint getBootExtensionThroughPluginStore() {
+		return extensionManager.getExtension(ScopedExtensionPoint.class).orElseThrow();
+	}
+
+}
@@ -0,0 +1,64 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import jexten.ExtensionManager;
+import jexten.benchmarks.ext.PluginExtensionPoint;
+import jexten.plugin.PluginStore;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cold build of a plugin store over a synthetic warehouse of N plugins.
+ * <p>
+ * A new warehouse folder is created for every iteration, so no state
+ * from previous builds can be reused.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class PluginStoreBenchmark {
+
+	@Param({"10", "50", "150"})
+	public int plugins;
+
+	private Path warehouse;
+
+
+	@Setup(Level.Iteration)
+	public void createWarehouse() throws IOException {
+		warehouse = BenchmarkModule.createSyntheticWarehouse(plugins);
+	}
+
+
+	@TearDown(Level.Iteration)
+	public void deleteWarehouse() throws IOException {
+		BenchmarkModule.deleteWarehouse(warehouse);
+	}
+
+
+	@Benchmark
+	public long coldBuild() {
+		return newPluginStore().moduleLayers().count();
+	}
+
+
+	@Benchmark
+	public long coldBuildAndLookup() {
+		return ExtensionManager.create(newPluginStore()).getExtensions(PluginExtensionPoint.class).count();
+	}
+
+
+	private PluginStore newPluginStore() {
+		return PluginStore.builder()
+			.module(BenchmarkModule.check())
+			.warehousePath(warehouse)
+			.build();
+	}
+
+}
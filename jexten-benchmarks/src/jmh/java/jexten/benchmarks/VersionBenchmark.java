@@ -0,0 +1,44 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import jexten.Version;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VersionBenchmark {
+
+	public String version = "2.4.1-SNAPSHOT";
+	private Version specification;
+	private Version implementation;
+
+
+	@Setup
+	public void setup() {
+		specification = Version.of("2.4");
+		implementation = Version.of("2.1.3");
+	}
+
+
+	@Benchmark
+	public Version parse() {
+		return Version.of(version);
+	}
+
+
+	@Benchmark
+	public boolean isCompatibleWith() {
+		return specification.isCompatibleWith(implementation);
+	}
+
+
+	@Benchmark
+	public boolean parseAndCheckCompatibility() {
+		return Version.of("2.4").isCompatibleWith(Version.of(version));
+	}
+
+}
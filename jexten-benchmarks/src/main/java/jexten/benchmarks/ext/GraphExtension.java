@@ -0,0 +1,23 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.benchmarks.ext;
+
+import java.util.List;
+import jexten.*;
+
+@Extension(scope = Scope.TRANSIENT)
+public class GraphExtension implements GraphExtensionPoint {
+
+	@Inject
+	ScopedExtensionPoint scoped;
+
+	@Inject
+	List<ScopedExtensionPoint> allScoped;
+
+	@Inject("local")
+	ScopedExtensionPoint local;
+
+	@Inject
+	LoopExtensionPoint loop;
+
+}
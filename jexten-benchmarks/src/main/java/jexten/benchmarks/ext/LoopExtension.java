@@ -0,0 +1,13 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.benchmarks.ext;
+
+import jexten.*;
+
+@Extension(scope = Scope.GLOBAL)
+public class LoopExtension implements LoopExtensionPoint {
+
+	@Inject
+	LoopExtensionPoint loop;
+
+}
@@ -0,0 +1,10 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.benchmarks.ext;
+
+import jexten.ExtensionPoint;
+
+@ExtensionPoint
+public interface LoopExtensionPoint {
+
+}
@@ -0,0 +1,24 @@
+import jexten.benchmarks.ext.*;
+
+module jexten.benchmarks {
+
+    requires jexten;
+
+    exports jexten.benchmarks.ext;
+    opens jexten.benchmarks.ext to jexten;
+
+    uses ScopedExtensionPoint;
+    uses GraphExtensionPoint;
+    uses LoopExtensionPoint;
+    uses PluginExtensionPoint;
+
+    provides ScopedExtensionPoint with
+        GlobalExtension,
+        LocalExtension,
+        TransientExtension;
+
+    provides GraphExtensionPoint with GraphExtension;
+
+    provides LoopExtensionPoint with LoopExtension;
+
+}
@@ -0,0 +1,11 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.benchmarks.synthetic;
+
+import jexten.Extension;
+import jexten.benchmarks.ext.PluginExtensionPoint;
+
+@Extension
+public class SyntheticExtension implements PluginExtensionPoint {
+
+}
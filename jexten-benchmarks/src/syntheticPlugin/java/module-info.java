@@ -0,0 +1,11 @@
+module jexten.benchmarks.synthetic {
+
+    requires jexten;
+    requires jexten.benchmarks;
+
+    exports jexten.benchmarks.synthetic;
+
+    provides jexten.benchmarks.ext.PluginExtensionPoint with
+        jexten.benchmarks.synthetic.SyntheticExtension;
+
+}
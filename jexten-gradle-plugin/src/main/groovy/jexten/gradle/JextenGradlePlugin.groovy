@@ -9,6 +9,7 @@ import org.gradle.api.GradleException
 import org.gradle.api.Plugin
 import org.gradle.api.Project
 import org.gradle.api.tasks.bundling.Zip
+import org.gradle.api.tasks.bundling.ZipEntryCompression
 import org.gradle.jvm.tasks.Jar
 
 import java.util.stream.Collectors
@@ -76,6 +77,8 @@ class JextenGradlePlugin implements Plugin<Project> {
             dependsOn 'collectPluginDependencies'
             destinationDirectory = project.layout.buildDirectory
             from project.layout.buildDirectory.dir('pluginLib')
+            // stored jars can be read by the plugin store without extracting them
+            entryCompression = ZipEntryCompression.STORED
             doFirst {
                 archiveFileName = "${project.name}-${project.version}.zip"
             }
@@ -2,44 +2,119 @@
 
 package jexten.maven;
 
+import java.io.IOException;
 import java.net.URI;
-import java.nio.file.Path;
+import java.nio.file.*;
+import java.time.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.*;
+import jexten.Version;
 import jexten.plugin.*;
 import maven.fetcher.*;
 import org.slf4j.Logger;
 
 
-
+/**
+ * Artifact resolver backed by Maven repositories.
+ * <p>
+ * Resolutions are cached by coordinates: resolutions of fixed versions are kept
+ * as long as the resolved files exist, while the latest versions of plugins
+ * (obtained from the repository metadata instead of resolving the plugins) are
+ * kept for the configured time-to-live. Lookups of the metadata that fail are not
+ * cached, and the plugins are fully resolved instead, so the credentials and proxies
+ * configured for the fetcher apply. In offline mode, only the local repository is used.
+ */
 public class MavenArtifactResolver implements ArtifactResolver {
 
 
+    public static final Duration DEFAULT_METADATA_TTL = Duration.ofMinutes(10);
+    public static final int DEFAULT_METADATA_PARALLELISM = 4;
+
+
     public static MavenArtifactResolverBuilder builder() {
         return new MavenArtifactResolverBuilder();
     }
 
 
+    private record CachedVersion(Optional<MavenMetadata.AvailableVersion> version, Instant expiration) { }
+
+
     private final MavenFetcher mavenFetcher;
+    private final MavenMetadata metadata;
+    private final Duration metadataTTL;
+    private final int metadataParallelism;
+    private final Clock clock;
     private final Logger logger;
+    private final Map<List<String>, List<ArtifactPath>> resolutions = new ConcurrentHashMap<>();
+    private final Map<PluginID, CachedVersion> latestVersions = new ConcurrentHashMap<>();
+
 
     public MavenArtifactResolver(
         Path localRepositoryPath,
         Map<String,URI> remoteRepositories,
         Properties configuration,
         Logger logger
+    ) {
+        this(
+            localRepositoryPath,
+            remoteRepositories,
+            configuration,
+            logger,
+            DEFAULT_METADATA_TTL,
+            DEFAULT_METADATA_PARALLELISM,
+            false,
+            Clock.systemUTC()
+        );
+    }
+
+
+    MavenArtifactResolver(
+        Path localRepositoryPath,
+        Map<String,URI> remoteRepositories,
+        Properties configuration,
+        Logger logger,
+        Duration metadataTTL,
+        int metadataParallelism,
+        boolean offline,
+        Clock clock
     ) {
         this.mavenFetcher = new MavenFetcher()
             .localRepositoryPath(localRepositoryPath)
             .config(configuration)
             .logger(logger);
         this.logger = logger;
-        remoteRepositories.forEach((id,uri)-> mavenFetcher.addRemoteRepository(id,uri.toString()));
+        this.metadataTTL = metadataTTL;
+        this.metadataParallelism = metadataParallelism;
+        this.clock = clock;
+        if (offline) {
+            logger.info("Maven resolver in offline mode, only the local repository {} will be used", localRepositoryPath);
+            this.metadata = new MavenMetadata(localRepositoryPath, List.of(), logger);
+        } else {
+            remoteRepositories.forEach((id,uri)-> mavenFetcher.addRemoteRepository(id,uri.toString()));
+            this.metadata = new MavenMetadata(localRepositoryPath, remoteRepositories.values(), logger);
+        }
+    }
+
+
+    /**
+     * Discard every cached resolution and version, so they are requested again
+     */
+    public void clearCache() {
+        resolutions.clear();
+        latestVersions.clear();
     }
 
 
     private Stream<ArtifactResolver.ArtifactPath> resolveCoordinates(List<String> coordinates) {
 
+        var key = coordinates.stream().sorted().toList();
+        var cached = resolutions.get(key);
+        if (cached != null && cached.stream().map(ArtifactPath::path).allMatch(Files::exists)) {
+            logger.debug("Artifacts {} already resolved", coordinates);
+            return cached.stream();
+        }
+
         var request = new MavenFetchRequest(coordinates).scopes("compile","provided");
 
         var result = mavenFetcher.fetchArtifacts(request);
@@ -55,8 +130,11 @@ public class MavenArtifactResolver implements ArtifactResolver {
                 .collect(Collectors.joining("\n"));
             logger.debug("Artifacts fetched:\n{}", artifacts);
         }
-        return result.allArtifacts()
-            .map(it -> new ArtifactPath(ArtifactID.of(it.coordinates()), it.path()));
+        var artifacts = result.allArtifacts()
+            .map(it -> new ArtifactPath(ArtifactID.of(it.coordinates()), it.path()))
+            .toList();
+        resolutions.put(key, artifacts);
+        return artifacts.stream();
     }
 
 
@@ -71,15 +149,92 @@ public class MavenArtifactResolver implements ArtifactResolver {
     }
 
 
+    /*
+     * Plugins are resolved as the fixed coordinates of their latest versions, so
+     * the resolution can be cached regardless of new versions being published
+     */
     @Override
     public Stream<ArtifactPath> resolvePlugins(Collection<PluginID> plugins) throws PluginException {
         List<String> coordinates = plugins.stream()
-            .map(PluginID::toString)
+            .map(plugin -> latestAvailableVersion(plugin)
+                .map(version -> plugin + ":" + version.coordinate())
+                .orElse(plugin.toString())
+            )
             .toList();
         return resolveCoordinates(coordinates);
     }
 
 
+    /**
+     * Get the latest version of the given plugin from the repository metadata,
+     * without resolving the plugin
+     */
+    @Override
+    public Optional<Version> latestVersion(PluginID pluginID) {
+        var version = latestAvailableVersion(pluginID).map(MavenMetadata.AvailableVersion::version);
+        return version.isPresent() ? version : ArtifactResolver.super.latestVersion(pluginID);
+    }
+
+
+    /*
+     * Lookups are I/O bound, so they are performed in parallel up to the configured limit
+     */
+    @Override
+    public Map<PluginID,Version> latestVersions(Collection<PluginID> pluginIDs) {
+        Map<PluginID,Version> versions = new HashMap<>();
+        if (pluginIDs.isEmpty()) {
+            return versions;
+        }
+        var lookupExecutor = Executors.newFixedThreadPool(Math.min(metadataParallelism, pluginIDs.size()), task -> {
+            var thread = new Thread(task, "jexten-metadata-lookup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Map<PluginID,CompletableFuture<Optional<Version>>> lookups = new LinkedHashMap<>();
+            for (var pluginID : pluginIDs) {
+                lookups.put(pluginID, CompletableFuture.supplyAsync(() -> latestVersion(pluginID), lookupExecutor));
+            }
+            for (var lookup : lookups.entrySet()) {
+                join(lookup.getValue()).ifPresent(version -> versions.put(lookup.getKey(), version));
+            }
+            return versions;
+        } finally {
+            lookupExecutor.shutdownNow();
+        }
+    }
+
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
 
 
+    private Optional<MavenMetadata.AvailableVersion> latestAvailableVersion(PluginID pluginID) {
+        var now = clock.instant();
+        var cached = latestVersions.get(pluginID);
+        if (cached != null && now.isBefore(cached.expiration())) {
+            return cached.version();
+        }
+        Optional<MavenMetadata.AvailableVersion> version;
+        try {
+            version = metadata.latestVersion(pluginID);
+        } catch (IOException e) {
+            // the repository might require credentials or proxies known only by the fetcher
+            logger.warn("Cannot read metadata of {}, it will be resolved instead: {}", pluginID, e.getMessage());
+            logger.debug("", e);
+            return Optional.empty();
+        }
+        logger.debug("Latest version of {} is {}", pluginID, version.map(MavenMetadata.AvailableVersion::coordinate).orElse("unknown"));
+        latestVersions.put(pluginID, new CachedVersion(version, now.plus(metadataTTL)));
+        return version;
+    }
+
 }
@@ -4,7 +4,9 @@ package jexten.maven;
 
 import java.net.URI;
 import java.nio.file.Path;
+import java.time.*;
 import java.util.*;
+import jexten.plugin.PluginException;
 
 import org.slf4j.*;
 
@@ -14,6 +16,9 @@ public class MavenArtifactResolverBuilder {
 	private final Map<String, URI> remoteRepositories = new HashMap<>();
 	private Properties configuration;
 	private Logger logger;
+	private Duration metadataTimeToLive = MavenArtifactResolver.DEFAULT_METADATA_TTL;
+	private int metadataParallelism = MavenArtifactResolver.DEFAULT_METADATA_PARALLELISM;
+	private boolean offline;
 
 
 	public MavenArtifactResolverBuilder localRepositoryPath(Path localRepositoryPath) {
@@ -47,6 +52,42 @@ public class MavenArtifactResolverBuilder {
 	}
 
 
+	/**
+	 * Set for how long the latest version of a plugin obtained from the repository
+	 * metadata is reused before checking the repositories again. By default, 10 minutes.
+	 */
+	public MavenArtifactResolverBuilder metadataTimeToLive(Duration metadataTimeToLive) {
+		if (metadataTimeToLive == null || metadataTimeToLive.isNegative()) {
+			throw new PluginException("Metadata time-to-live must be a non-negative duration");
+		}
+		this.metadataTimeToLive = metadataTimeToLive;
+		return this;
+	}
+
+
+	/**
+	 * Set the maximum number of plugins whose latest version is looked up at the same
+	 * time when requesting several plugins at once. By default, 4.
+	 */
+	public MavenArtifactResolverBuilder metadataParallelism(int metadataParallelism) {
+		if (metadataParallelism < 1) {
+			throw new PluginException("Metadata parallelism must be at least 1");
+		}
+		this.metadataParallelism = metadataParallelism;
+		return this;
+	}
+
+
+	/**
+	 * Use only the artifacts already present in the local repository, ignoring the
+	 * remote repositories
+	 */
+	public MavenArtifactResolverBuilder offline(boolean offline) {
+		this.offline = offline;
+		return this;
+	}
+
+
 	public MavenArtifactResolver build() {
 		return new MavenArtifactResolver(
 			Objects.requireNonNullElse(
@@ -55,7 +96,11 @@ public class MavenArtifactResolverBuilder {
 			),
 			remoteRepositories,
 			Objects.requireNonNullElseGet(configuration,Properties::new),
-			Objects.requireNonNullElse(logger, LoggerFactory.getLogger(MavenArtifactResolver.class))
+			Objects.requireNonNullElse(logger, LoggerFactory.getLogger(MavenArtifactResolver.class)),
+			metadataTimeToLive,
+			metadataParallelism,
+			offline,
+			Clock.systemUTC()
 		);
 	}
 
@@ -0,0 +1,148 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.maven;
+
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+import javax.xml.parsers.*;
+import jexten.Version;
+import jexten.plugin.PluginID;
+import org.slf4j.Logger;
+import org.w3c.dom.*;
+import org.xml.sax.SAXException;
+
+
+/**
+ * Lookup of the versions available for an artifact, reading only the version
+ * metadata of the repositories instead of resolving the artifact.
+ * <p>
+ * Remote repositories are queried for their <tt>maven-metadata.xml</tt> file, while
+ * the local repository is inspected directly, since it only contains metadata of
+ * locally installed artifacts.
+ * <p>
+ * The metadata is read with plain URL connections, regardless of the credentials
+ * and proxies configured for the fetcher. Any remote read that fails for reasons
+ * other than the metadata not being present makes the whole lookup fail, so the
+ * caller can resolve the artifact instead.
+ */
+class MavenMetadata {
+
+    private static final String METADATA_FILE = "maven-metadata.xml";
+    private static final int TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * A version as published in the repository, along with its parsed form
+     */
+    record AvailableVersion(String coordinate, Version version) { }
+
+
+    private final Path localRepositoryPath;
+    private final Collection<URI> remoteRepositories;
+    private final Logger logger;
+
+
+    MavenMetadata(Path localRepositoryPath, Collection<URI> remoteRepositories, Logger logger) {
+        this.localRepositoryPath = localRepositoryPath;
+        this.remoteRepositories = List.copyOf(remoteRepositories);
+        this.logger = logger;
+    }
+
+
+    /**
+     * @return The latest non-snapshot version of the given artifact available in
+     *         any repository
+     * @throws IOException if the metadata of any remote repository cannot be read
+     */
+    Optional<AvailableVersion> latestVersion(PluginID pluginID) throws IOException {
+        List<String> versions = new ArrayList<>();
+        for (URI repository : remoteRepositories) {
+            versions.addAll(remoteVersions(repository, pluginID));
+        }
+        return Stream.concat(versions.stream(), localVersions(pluginID))
+            .filter(version -> !version.endsWith("-SNAPSHOT"))
+            .distinct()
+            .flatMap(MavenMetadata::parse)
+            .max(Comparator.comparing(AvailableVersion::version));
+    }
+
+
+    private List<String> remoteVersions(URI repository, PluginID pluginID) throws IOException {
+        String base = repository.toString().endsWith("/") ? repository.toString() : repository + "/";
+        URI metadata = URI.create(base).resolve(artifactPath(pluginID) + "/" + METADATA_FILE);
+        try {
+            var connection = metadata.toURL().openConnection();
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            try (var input = connection.getInputStream()) {
+                return readVersions(input);
+            }
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            logger.debug("no metadata of {} in {}", pluginID, repository);
+            return List.of();
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Invalid metadata of " + pluginID + " in " + repository + ": " + e.getMessage(), e);
+        }
+    }
+
+
+    /*
+     * Every folder of the artifact in the local repository containing the artifact
+     * pom is an installed version
+     */
+    private Stream<String> localVersions(PluginID pluginID) {
+        Path artifactFolder = localRepositoryPath.resolve(artifactPath(pluginID));
+        if (!Files.isDirectory(artifactFolder)) {
+            return Stream.empty();
+        }
+        try (var folders = Files.list(artifactFolder)) {
+            return folders
+                .filter(folder -> {
+                    String version = folder.getFileName().toString();
+                    return Files.exists(folder.resolve(pluginID.name() + "-" + version + ".pom"));
+                })
+                .map(folder -> folder.getFileName().toString())
+                .toList()
+                .stream();
+        } catch (IOException e) {
+            logger.debug("", e);
+            return Stream.empty();
+        }
+    }
+
+
+    private static List<String> readVersions(InputStream input)
+    throws IOException, ParserConfigurationException, SAXException {
+        var factory = DocumentBuilderFactory.newInstance();
+        factory.setExpandEntityReferences(false);
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        var document = factory.newDocumentBuilder().parse(input);
+        NodeList nodes = document.getElementsByTagName("version");
+        List<String> versions = new ArrayList<>();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            // only versions listed in <versioning><versions>
+            Node node = nodes.item(i);
+            if (node.getParentNode() != null && "versions".equals(node.getParentNode().getNodeName())) {
+                versions.add(node.getTextContent().strip());
+            }
+        }
+        return versions;
+    }
+
+
+    private static Stream<AvailableVersion> parse(String version) {
+        try {
+            return Stream.of(new AvailableVersion(version, Version.of(version)));
+        } catch (IllegalArgumentException e) {
+            return Stream.empty();
+        }
+    }
+
+
+    private static String artifactPath(PluginID pluginID) {
+        return pluginID.group().replace('.', '/') + "/" + pluginID.name();
+    }
+
+}
@@ -1,5 +1,6 @@
 module jexten.maven {
 	requires org.slf4j;
+	requires java.xml;
 	requires jexten;
 	requires maven.fetcher;
 	exports jexten.maven;
@@ -1,13 +1,26 @@
 package jexten.maven;
 
-import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import jexten.Version;
+import jexten.plugin.*;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class MavenArtifactResolverTest {
 
 	private static final Path LOCAL_MAVEN =
 		Path.of(System.getProperty("user.home")).resolve(".m2/repository");
 
+	private static final PluginID PLUGIN = PluginID.of("jexten.test:plugin-a");
+
+	@TempDir
+	Path folder;
+
 
 	@Test
 	void test() {
@@ -18,4 +31,125 @@ public class MavenArtifactResolverTest {
 			.build();
 	}
 
+
+	@Test
+	void latestVersionIsReadFromRepositoryMetadata() throws IOException {
+		Path remote = folder.resolve("remote");
+		writeMetadata(remote, "1.0.0", "1.2.0", "1.10.0", "2.0.0-SNAPSHOT");
+		var resolver = MavenArtifactResolver.builder()
+			.localRepositoryPath(folder.resolve("local"))
+			.addRemoteRepository("remote", remote.toUri())
+			.build();
+		assertEquals(Optional.of(Version.of("1.10.0")), resolver.latestVersion(PLUGIN));
+		assertEquals(Map.of(PLUGIN, Version.of("1.10.0")), resolver.latestVersions(List.of(PLUGIN)));
+	}
+
+
+	@Test
+	void latestVersionIsCachedUntilItExpires() throws IOException {
+		Path remote = folder.resolve("remote");
+		writeMetadata(remote, "1.0.0");
+		var cachedResolver = MavenArtifactResolver.builder()
+			.localRepositoryPath(folder.resolve("local"))
+			.addRemoteRepository("remote", remote.toUri())
+			.metadataTimeToLive(Duration.ofHours(1))
+			.build();
+		var expiredResolver = MavenArtifactResolver.builder()
+			.localRepositoryPath(folder.resolve("local"))
+			.addRemoteRepository("remote", remote.toUri())
+			.metadataTimeToLive(Duration.ZERO)
+			.build();
+		assertEquals(Optional.of(Version.of("1.0.0")), cachedResolver.latestVersion(PLUGIN));
+		assertEquals(Optional.of(Version.of("1.0.0")), expiredResolver.latestVersion(PLUGIN));
+		writeMetadata(remote, "1.0.0", "1.1.0");
+		assertEquals(Optional.of(Version.of("1.0.0")), cachedResolver.latestVersion(PLUGIN));
+		assertEquals(Optional.of(Version.of("1.1.0")), expiredResolver.latestVersion(PLUGIN));
+		cachedResolver.clearCache();
+		assertEquals(Optional.of(Version.of("1.1.0")), cachedResolver.latestVersion(PLUGIN));
+	}
+
+
+	@Test
+	void failedLookupsAreNotCached() throws IOException {
+		Path remote = folder.resolve("remote");
+		Files.createDirectories(remote.resolve("jexten/test/plugin-a"));
+		Files.writeString(remote.resolve("jexten/test/plugin-a/maven-metadata.xml"), "<metadata><versioning>");
+		var resolver = MavenArtifactResolver.builder()
+			.localRepositoryPath(folder.resolve("local"))
+			.addRemoteRepository("remote", remote.toUri())
+			.metadataTimeToLive(Duration.ofHours(1))
+			.build();
+		try {
+			resolver.latestVersion(PLUGIN);
+		} catch (PluginException e) {
+			// the plugin is resolved instead, but it is not actually published
+		}
+		writeMetadata(remote, "1.0.0");
+		assertEquals(Optional.of(Version.of("1.0.0")), resolver.latestVersion(PLUGIN));
+	}
+
+
+	@Test
+	void latestVersionsOfSeveralPluginsAreLookedUpAtOnce() throws IOException {
+		Path remote = folder.resolve("remote");
+		writeArtifactMetadata(remote, "plugin-a", "1.0.0", "1.1.0");
+		writeArtifactMetadata(remote, "plugin-b", "1.0.0", "2.0.0");
+		writeArtifactMetadata(remote, "plugin-c", "3.0.0");
+		var resolver = MavenArtifactResolver.builder()
+			.localRepositoryPath(folder.resolve("local"))
+			.addRemoteRepository("remote", remote.toUri())
+			.metadataParallelism(2)
+			.build();
+		var plugins = List.of(
+			PluginID.of("jexten.test:plugin-a"),
+			PluginID.of("jexten.test:plugin-b"),
+			PluginID.of("jexten.test:plugin-c")
+		);
+		assertEquals(
+			Map.of(plugins.get(0), Version.of("1.1.0"), plugins.get(1), Version.of("2.0.0"), plugins.get(2), Version.of("3.0.0")),
+			resolver.latestVersions(plugins)
+		);
+		assertEquals(Map.of(), resolver.latestVersions(List.of()));
+	}
+
+
+	@Test
+	void offlineResolverOnlyUsesLocalRepository() throws IOException {
+		Path remote = folder.resolve("remote");
+		Path local = folder.resolve("local");
+		writeMetadata(remote, "1.0.0", "3.0.0");
+		Path artifactFolder = local.resolve("jexten/test/plugin-a");
+		for (String version : List.of("1.0.0", "2.0.0")) {
+			Files.createDirectories(artifactFolder.resolve(version));
+			Files.writeString(artifactFolder.resolve(version).resolve("plugin-a-"+version+".pom"), "<project/>");
+		}
+		// a folder without pom is not an installed version
+		Files.createDirectories(artifactFolder.resolve("2.5.0"));
+		var resolver = MavenArtifactResolver.builder()
+			.localRepositoryPath(local)
+			.addRemoteRepository("remote", remote.toUri())
+			.offline(true)
+			.build();
+		assertEquals(Optional.of(Version.of("2.0.0")), resolver.latestVersion(PLUGIN));
+	}
+
+
+	private static void writeMetadata(Path repository, String... versions) throws IOException {
+		writeArtifactMetadata(repository, "plugin-a", versions);
+	}
+
+
+	private static void writeArtifactMetadata(Path repository, String artifact, String... versions) throws IOException {
+		Path artifactFolder = repository.resolve("jexten/test").resolve(artifact);
+		Files.createDirectories(artifactFolder);
+		StringBuilder metadata = new StringBuilder()
+			.append("<metadata><groupId>jexten.test</groupId><artifactId>").append(artifact).append("</artifactId>")
+			.append("<versioning><latest>").append(versions[versions.length-1]).append("</latest><versions>");
+		for (String version : versions) {
+			metadata.append("<version>").append(version).append("</version>");
+		}
+		metadata.append("</versions></versioning></metadata>");
+		Files.writeString(artifactFolder.resolve("maven-metadata.xml"), metadata);
+	}
+
 }
@@ -0,0 +1,153 @@
+package jexten.processor;
+
+import java.util.*;
+import javax.lang.model.element.*;
+import javax.lang.model.util.ElementFilter;
+import jexten.*;
+
+/**
+ * Generates the source code of an {@link ExtensionFactory} for an extension
+ * class with a constructor annotated with {@link Inject}, invoking such
+ * constructor without reflection.
+ * <p>
+ * Since the generated factory is placed in the same package as the extension,
+ * the injected constructor must not be private. Also, the extension must declare
+ * a public static <tt>provider()</tt> method delegating to the generated factory,
+ * as required by the Java service loader for classes without a default constructor.
+ */
+class FactoryGenerator {
+
+	static final String OPTION = "jexten.factories";
+
+	private final ProcessorHelper helper;
+	private final Errors errors;
+
+
+	FactoryGenerator(ProcessorHelper helper, Errors errors) {
+		this.helper = helper;
+		this.errors = errors;
+	}
+
+
+	/**
+	 * Check that the injected constructor of the extension can be invoked by a
+	 * generated factory, registering an error otherwise
+	 * @return whether a factory should be generated
+	 */
+	boolean validate(TypeElement extension, boolean enabled) {
+		var constructors = injectedConstructors(extension);
+		if (constructors.isEmpty()) {
+			return false;
+		}
+		if (!enabled) {
+			errors.addMessage(
+				extension,
+				"Injected constructor of {} requires option {} to be enabled",
+				extension.getQualifiedName(),
+				OPTION
+			);
+			return false;
+		}
+		if (constructors.size() > 1) {
+			errors.addMessage(
+				extension,
+				"Only one constructor of {} can be annotated with @Inject",
+				extension.getQualifiedName()
+			);
+			return false;
+		}
+		if (extension.getModifiers().contains(Modifier.ABSTRACT)) {
+			errors.addMessage(extension, "Extension {} cannot be abstract", extension.getQualifiedName());
+			return false;
+		}
+		boolean valid = true;
+		if (constructors.get(0).getModifiers().contains(Modifier.PRIVATE)) {
+			errors.addMessage(
+				constructors.get(0),
+				"Injected constructor of {} cannot be private",
+				extension.getQualifiedName()
+			);
+			valid = false;
+		}
+		if (!declaresProviderMethod(extension)) {
+			errors.addMessage(
+				extension,
+				"Extension {} with an injected constructor must declare the following method:\n" +
+				"public static {} provider() {\n    return {}.provider();\n}",
+				extension.getQualifiedName(),
+				extension.getSimpleName(),
+				helper.generatedName(extension, ExtensionFactory.SUFFIX)
+			);
+			valid = false;
+		}
+		return valid;
+	}
+
+
+	void generate(TypeElement extension) {
+		String packageName = helper.getPackageOf(extension).getQualifiedName().toString();
+		String factoryName = helper.generatedName(extension, ExtensionFactory.SUFFIX);
+		String extensionType = extension.getQualifiedName().toString();
+		var parameters = injectedConstructors(extension).get(0).getParameters();
+
+		var source = new StringBuilder();
+		if (!packageName.isEmpty()) {
+			source.append("package ").append(packageName).append(";\n\n");
+		}
+		source.append("// Generated by jexten-processor. Do not edit.\n");
+		source.append("public final class ").append(factoryName)
+			.append(" implements jexten.ExtensionFactory<").append(extensionType).append("> {\n\n");
+		source.append("    private static final java.util.List<InjectedParameter> INJECTED_PARAMETERS = java.util.List.of(");
+		for (int i = 0; i < parameters.size(); i++) {
+			var parameter = parameters.get(i);
+			var annotation = parameter.getAnnotation(Inject.class);
+			source.append(i == 0 ? "\n" : ",\n")
+				.append("        new InjectedParameter(")
+				.append(helper.erasedName(parameter.asType())).append(".class, ")
+				.append(helper.erasedName(helper.elementType(parameter.asType()))).append(".class, \"")
+				.append(annotation == null ? "" : ProcessorHelper.escape(annotation.value())).append("\")");
+		}
+		source.append("\n    );\n\n");
+		// the extension manager uses the factory directly, so it is only invoked by the service loader
+		source.append("    public static ").append(extensionType).append(" provider() {\n");
+		source.append("        throw new IllegalStateException(\"Extension ").append(extensionType)
+			.append(" can only be instantiated by an extension manager\");\n");
+		source.append("    }\n\n");
+		source.append("    @Override\n");
+		source.append("    public java.util.List<InjectedParameter> injectedParameters() {\n");
+		source.append("        return INJECTED_PARAMETERS;\n");
+		source.append("    }\n\n");
+		source.append("    @Override\n");
+		source.append("    @SuppressWarnings(\"unchecked\")\n");
+		source.append("    public ").append(extensionType).append(" newInstance(Object[] arguments) {\n");
+		source.append("        return new ").append(extensionType).append("(");
+		for (int i = 0; i < parameters.size(); i++) {
+			source.append(i == 0 ? "\n" : ",\n")
+				.append("            (").append(parameters.get(i).asType()).append(") arguments[").append(i).append("]");
+		}
+		source.append(parameters.isEmpty() ? ");\n" : "\n        );\n");
+		source.append("    }\n\n");
+		source.append("}\n");
+
+		String qualifiedName = packageName.isEmpty() ? factoryName : packageName + "." + factoryName;
+		helper.writeSourceFile(qualifiedName, source.toString(), extension);
+	}
+
+
+	private List<ExecutableElement> injectedConstructors(TypeElement extension) {
+		return ElementFilter.constructorsIn(extension.getEnclosedElements()).stream()
+			.filter(constructor -> constructor.getAnnotation(Inject.class) != null)
+			.toList();
+	}
+
+
+	private boolean declaresProviderMethod(TypeElement extension) {
+		return ElementFilter.methodsIn(extension.getEnclosedElements()).stream()
+			.anyMatch(method ->
+				method.getSimpleName().contentEquals("provider") &&
+				method.getParameters().isEmpty() &&
+				method.getModifiers().containsAll(Set.of(Modifier.PUBLIC, Modifier.STATIC))
+			);
+	}
+
+}
@@ -0,0 +1,138 @@
+package jexten.processor;
+
+import java.util.*;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.ElementFilter;
+import jexten.*;
+
+/**
+ * Generates the source code of an {@link ExtensionInjector} for an extension
+ * class, assigning its {@link Inject} fields without reflection.
+ * <p>
+ * Since the generated injector is placed in the same package as the extension,
+ * injectable fields must not be private nor final, and fields inherited from
+ * superclasses of other packages must be public.
+ */
+class InjectorGenerator {
+
+	static final String OPTION = "jexten.injectors";
+
+	private record InjectableField(VariableElement element, String name, TypeMirror type) { }
+
+
+	private final ProcessorHelper helper;
+	private final Errors errors;
+
+
+	InjectorGenerator(ProcessorHelper helper, Errors errors) {
+		this.helper = helper;
+		this.errors = errors;
+	}
+
+
+	/**
+	 * Check that the injectable fields of the extension can be assigned by a
+	 * generated injector, registering an error otherwise
+	 * @return whether an injector should be generated
+	 */
+	boolean validate(TypeElement extension) {
+		var fields = injectableFields(extension);
+		boolean valid = true;
+		for (var field : fields) {
+			valid = validateField(extension, field) && valid;
+		}
+		return valid && !fields.isEmpty();
+	}
+
+
+	void generate(TypeElement extension) {
+		String packageName = helper.getPackageOf(extension).getQualifiedName().toString();
+		String injectorName = helper.generatedName(extension, ExtensionInjector.SUFFIX);
+		String extensionType = extension.getQualifiedName().toString();
+		var fields = injectableFields(extension);
+
+		var source = new StringBuilder();
+		if (!packageName.isEmpty()) {
+			source.append("package ").append(packageName).append(";\n\n");
+		}
+		source.append("// Generated by jexten-processor. Do not edit.\n");
+		source.append("public final class ").append(injectorName)
+			.append(" implements jexten.ExtensionInjector<").append(extensionType).append("> {\n\n");
+		source.append("    private static final java.util.List<InjectedField> INJECTED_FIELDS = java.util.List.of(");
+		for (int i = 0; i < fields.size(); i++) {
+			var field = fields.get(i);
+			source.append(i == 0 ? "\n" : ",\n")
+				.append("        new InjectedField(\"").append(field.name()).append("\", ")
+				.append(helper.erasedName(field.type())).append(".class, ")
+				.append(helper.erasedName(helper.elementType(field.type()))).append(".class, \"")
+				.append(ProcessorHelper.escape(field.element().getAnnotation(Inject.class).value())).append("\")");
+		}
+		source.append("\n    );\n\n");
+		source.append("    @Override\n");
+		source.append("    public java.util.List<InjectedField> injectedFields() {\n");
+		source.append("        return INJECTED_FIELDS;\n");
+		source.append("    }\n\n");
+		source.append("    @Override\n");
+		source.append("    @SuppressWarnings(\"unchecked\")\n");
+		source.append("    public void inject(").append(extensionType).append(" extension, int index, Object value) {\n");
+		source.append("        switch (index) {\n");
+		for (int i = 0; i < fields.size(); i++) {
+			var field = fields.get(i);
+			source.append("            case ").append(i).append(" -> extension.").append(field.name())
+				.append(" = (").append(field.type()).append(") value;\n");
+		}
+		source.append("            default -> throw new IndexOutOfBoundsException(index);\n");
+		source.append("        }\n");
+		source.append("    }\n\n");
+		source.append("}\n");
+
+		String qualifiedName = packageName.isEmpty() ? injectorName : packageName + "." + injectorName;
+		helper.writeSourceFile(qualifiedName, source.toString(), extension);
+	}
+
+
+	private boolean validateField(TypeElement extension, InjectableField field) {
+		var modifiers = field.element().getModifiers();
+		var declaringType = (TypeElement) field.element().getEnclosingElement();
+		boolean samePackage = helper.getPackageOf(declaringType).equals(helper.getPackageOf(extension));
+		if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)) {
+			errors.addMessage(
+				field.element(),
+				"Injected field {}.{} cannot be private or final when option {} is enabled",
+				declaringType.getQualifiedName(),
+				field.name(),
+				OPTION
+			);
+			return false;
+		}
+		if (!samePackage && !modifiers.contains(Modifier.PUBLIC)) {
+			errors.addMessage(
+				field.element(),
+				"Injected field {}.{} inherited from another package must be public when option {} is enabled",
+				declaringType.getQualifiedName(),
+				field.name(),
+				OPTION
+			);
+			return false;
+		}
+		return true;
+	}
+
+
+	private List<InjectableField> injectableFields(TypeElement extension) {
+		List<InjectableField> fields = new ArrayList<>();
+		TypeElement current = extension;
+		while (current != null) {
+			for (var field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+				if (field.getAnnotation(Inject.class) != null && !field.getModifiers().contains(Modifier.STATIC)) {
+					fields.add(new InjectableField(field, field.getSimpleName().toString(), field.asType()));
+				}
+			}
+			var superclass = current.getSuperclass();
+			current = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) helper.asElement(superclass) : null;
+		}
+		return fields;
+	}
+
+}
@@ -10,15 +10,22 @@ import javax.annotation.processing.*;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.*;
 import javax.lang.model.element.ModuleElement.*;
-import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.*;
 import javax.tools.Diagnostic.Kind;
 import jexten.*;
 
 /**
- * An extension processor that validate and publish the provided extensions
+ * An extension processor that validate and publish the provided extensions.
+ * <p>
+ * When the option <tt>-Ajexten.injectors=true</tt> is passed to the compiler,
+ * it also generates an {@link ExtensionInjector} for every extension with
+ * injectable fields, so they can be assigned without reflection. Likewise, the
+ * option <tt>-Ajexten.factories=true</tt> enables the generation of an
+ * {@link ExtensionFactory} for every extension with an injected constructor.
  */
 @SupportedAnnotationTypes({ "jexten.Extension", "jexten.ExtensionPoint" })
 @SupportedSourceVersion(SourceVersion.RELEASE_17)
+@SupportedOptions({ InjectorGenerator.OPTION, FactoryGenerator.OPTION })
 public class JextenProcessor extends AbstractProcessor {
 
     static {
@@ -26,6 +33,13 @@ public class JextenProcessor extends AbstractProcessor {
     }
 
 
+    /*
+     * The format of the extension index must be kept in sync with jexten.internal.ExtensionIndex
+     */
+    private static final String EXTENSION_INDEX_FILE = "extensions.index";
+    private static final String EXTENSION_INDEX_HEADER = "# jexten-index 2";
+
+
     private record ExtensionInfo(
         TypeElement extensionElement,
         String extensionName,
@@ -36,6 +50,10 @@ public class JextenProcessor extends AbstractProcessor {
 
     private ProcessorHelper helper;
     private Errors errors;
+    private InjectorGenerator injectorGenerator;
+    private boolean generateInjectors;
+    private FactoryGenerator factoryGenerator;
+    private boolean generateFactories;
 
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
@@ -46,6 +64,14 @@ public class JextenProcessor extends AbstractProcessor {
 
         this.helper = new ProcessorHelper(processingEnv, roundEnv);
         this.errors = new Errors();
+        this.injectorGenerator = new InjectorGenerator(helper, errors);
+        this.generateInjectors = Boolean.parseBoolean(
+            processingEnv.getOptions().get(InjectorGenerator.OPTION)
+        );
+        this.factoryGenerator = new FactoryGenerator(helper, errors);
+        this.generateFactories = Boolean.parseBoolean(
+            processingEnv.getOptions().get(FactoryGenerator.OPTION)
+        );
         helper.log(Kind.NOTE, "Processing annotations {}", annotations);
 
         if (!validateModuleInfoExists()) {
@@ -53,12 +79,23 @@ public class JextenProcessor extends AbstractProcessor {
         }
 
         Map<String, List<String>> serviceImplementations = new LinkedHashMap<>();
-        validateAndRegisterExtensions(serviceImplementations);
+        List<String> extensionIndex = new ArrayList<>();
+        List<TypeElement> injectedExtensions = new ArrayList<>();
+        List<TypeElement> constructedExtensions = new ArrayList<>();
+        validateAndRegisterExtensions(
+            serviceImplementations,
+            extensionIndex,
+            injectedExtensions,
+            constructedExtensions
+        );
         validateExtensionPoints();
         validateModule(serviceImplementations);
         showErrors();
         if (!errors.hasMessages()) {
             writeOutputFile(serviceImplementations);
+            writeExtensionIndex(extensionIndex);
+            injectedExtensions.forEach(injectorGenerator::generate);
+            constructedExtensions.forEach(factoryGenerator::generate);
         }
         return errors.hasMessages();
     }
@@ -84,12 +121,20 @@ public class JextenProcessor extends AbstractProcessor {
     }
 
 
-    private void validateAndRegisterExtensions(Map<String, List<String>> serviceImplementations) {
+    private void validateAndRegisterExtensions(
+        Map<String, List<String>> serviceImplementations,
+        List<String> extensionIndex,
+        List<TypeElement> injectedExtensions,
+        List<TypeElement> constructedExtensions
+    ) {
         for (Element extensionElement : helper.getElementsAnnotatedWith(Extension.class)) {
             if (validateElementKindIsClass(extensionElement)) {
                 validateAndRegisterExtension(
                     (TypeElement) extensionElement,
-                    serviceImplementations
+                    serviceImplementations,
+                    extensionIndex,
+                    injectedExtensions,
+                    constructedExtensions
                 );
             }
         }
@@ -163,7 +208,7 @@ public class JextenProcessor extends AbstractProcessor {
             );
             errors.addFix("exports {};",extensionPointPackage);
         }
-        if (noOpensMatchExtensionPointPackage(opens, extensionPointPackage)) {
+        if (requiresReflectiveAccess() && noOpensMatchExtensionPointPackage(opens, extensionPointPackage)) {
             errors.addMessage(
                 extensionPointPackage,
                 "Extension point package {} must be opened to jexten in the module-info.java file",
@@ -184,6 +229,13 @@ public class JextenProcessor extends AbstractProcessor {
 
 
 
+    private boolean requiresReflectiveAccess() {
+        // generated injectors do not require reflective access, but post-construct
+        // methods are always invoked reflectively
+        return !generateInjectors || !helper.getElementsAnnotatedWith(PostConstruct.class).isEmpty();
+    }
+
+
     private boolean noPackageMatchExtensionPointPackage(
         List<ExportsDirective> exports,
         PackageElement extensionPointPackage
@@ -297,7 +349,10 @@ public class JextenProcessor extends AbstractProcessor {
 
     private void validateAndRegisterExtension(
         TypeElement extensionElement,
-        Map<String, List<String>> serviceImplementations
+        Map<String, List<String>> serviceImplementations,
+        List<String> extensionIndex,
+        List<TypeElement> injectedExtensions,
+        List<TypeElement> constructedExtensions
     ) {
 
         boolean ignore;
@@ -331,6 +386,13 @@ public class JextenProcessor extends AbstractProcessor {
             serviceImplementations
                 .computeIfAbsent(extensionPointName, x -> new ArrayList<>())
                 .add(extensionName);
+            extensionIndex.add(extensionIndexLine(extensionInfo, extensionAnnotation));
+            if (generateInjectors && injectorGenerator.validate(extensionElement)) {
+                injectedExtensions.add(extensionElement);
+            }
+            if (factoryGenerator.validate(extensionElement, generateFactories)) {
+                constructedExtensions.add(extensionElement);
+            }
         }
 
     }
@@ -382,6 +444,40 @@ public class JextenProcessor extends AbstractProcessor {
     }
 
 
+    private String extensionIndexLine(ExtensionInfo extensionInfo, Extension extensionAnnotation) {
+        return Stream.of(
+            helper.getBinaryName(extensionInfo.extensionElement),
+            helper.getBinaryName(extensionInfo.extensionPointElement),
+            extensionAnnotation.priority().name(),
+            extensionAnnotation.scope().name(),
+            extensionAnnotation.name(),
+            extensionAnnotation.extensionPointVersion(),
+            loadedWithName(extensionAnnotation)
+        ).map(JextenProcessor::escapeIndexField).collect(joining("\t"));
+    }
+
+
+    private static String escapeIndexField(String field) {
+        // separators are escaped, so any value can be written in a single line
+        return field
+            .replace("\\", "\\\\")
+            .replace("\t", "\\t")
+            .replace("\n", "\\n")
+            .replace("\r", "\\r");
+    }
+
+
+    private String loadedWithName(Extension extensionAnnotation) {
+        try {
+            return extensionAnnotation.loadedWith().getName();
+        } catch (MirroredTypeException e) {
+            // classes referenced by annotations are not available at compile time
+            var loaderElement = (TypeElement) helper.asElement(e.getTypeMirror());
+            return helper.getBinaryName(loaderElement);
+        }
+    }
+
+
     private String computeExtensionPointName(
         TypeElement extensionClassElement,
         Extension extensionAnnotation
@@ -436,6 +532,18 @@ public class JextenProcessor extends AbstractProcessor {
         );
     }
 
+
+    private void writeExtensionIndex(List<String> extensionIndex) {
+        if (extensionIndex.isEmpty()) {
+            return;
+        }
+        var lines = new ArrayList<String>();
+        lines.add(EXTENSION_INDEX_HEADER);
+        lines.addAll(extensionIndex);
+        helper.writeMetaInfFile(EXTENSION_INDEX_FILE, lines);
+    }
+
+
     private boolean isAssignable(TypeMirror type, TypeMirror typeTo) {
         if (nameWithoutGeneric(type).equals(nameWithoutGeneric(typeTo))) {
             return true;
@@ -5,7 +5,7 @@ import java.lang.annotation.Annotation;
 import java.util.*;
 import javax.annotation.processing.*;
 import javax.lang.model.element.*;
-import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.*;
 import javax.lang.model.util.*;
 import javax.tools.*;
 import javax.tools.Diagnostic.Kind;
@@ -13,6 +13,12 @@ import javax.tools.Diagnostic.Kind;
 
 class ProcessorHelper {
 
+    private static final Set<String> COLLECTION_TYPES = Set.of(
+        "java.util.List",
+        "java.util.Set",
+        "java.util.Collection"
+    );
+
     private final Filer filer;
     private final Messager messager;
     private final Elements elementUtils;
@@ -100,4 +106,97 @@ class ProcessorHelper {
         return elementUtils.getTypeElement(name);
     }
 
+
+    public String getBinaryName(TypeElement element) {
+        return elementUtils.getBinaryName(element).toString();
+    }
+
+
+    public Element asElement(TypeMirror type) {
+        return typeUtils.asElement(type);
+    }
+
+
+    public TypeMirror erasure(TypeMirror type) {
+        return typeUtils.erasure(type);
+    }
+
+
+    public PackageElement getPackageOf(Element element) {
+        return elementUtils.getPackageOf(element);
+    }
+
+
+    /**
+     * @return The name of the class generated for the given type, that is, its binary
+     *         name without the package followed by the given suffix
+     */
+    String generatedName(TypeElement type, String suffix) {
+        String packageName = getPackageOf(type).getQualifiedName().toString();
+        String binaryName = getBinaryName(type);
+        return binaryName.substring(packageName.isEmpty() ? 0 : packageName.length() + 1) + suffix;
+    }
+
+
+    /**
+     * @return The type of the values to inject, that is, the component type for
+     *         arrays and collections, or the given type otherwise
+     */
+    TypeMirror elementType(TypeMirror type) {
+        if (type instanceof ArrayType arrayType) {
+            return arrayType.getComponentType();
+        }
+        if (type instanceof DeclaredType declaredType &&
+            COLLECTION_TYPES.contains(erasedName(declaredType)) &&
+            declaredType.getTypeArguments().size() == 1
+        ) {
+            return declaredType.getTypeArguments().get(0);
+        }
+        return type;
+    }
+
+
+    String erasedName(TypeMirror type) {
+        return erasure(type).toString();
+    }
+
+
+    /**
+     * @return The given value escaped to be used within a string literal. Control
+     *         characters are written as octal escapes, since unicode escapes are
+     *         translated before the source is parsed
+     */
+    static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (char character : value.toCharArray()) {
+            switch (character) {
+                case '\\' -> escaped.append("\\\\");
+                case '"' -> escaped.append("\\\"");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                case '\t' -> escaped.append("\\t");
+                default -> {
+                    if (Character.isISOControl(character)) {
+                        escaped.append(String.format("\\%03o", (int) character));
+                    } else {
+                        escaped.append(character);
+                    }
+                }
+            }
+        }
+        return escaped.toString();
+    }
+
+
+    void writeSourceFile(String qualifiedName, String source, Element originatingElement) {
+        try {
+            JavaFileObject sourceFile = filer.createSourceFile(qualifiedName, originatingElement);
+            try (Writer writer = sourceFile.openWriter()) {
+                writer.write(source);
+            }
+        } catch (IOException e) {
+            log(Kind.ERROR, "Cannot write source file {} : {}", qualifiedName, e.toString());
+        }
+    }
+
 }
@@ -0,0 +1,139 @@
+package jexten.processor;
+
+import java.io.*;
+import java.lang.module.*;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import javax.tools.*;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Compiles a single module with the {@link JextenProcessor}, using the modules of
+ * the test classpath (that is, <tt>jexten</tt> and its dependencies) as module path.
+ * The compiled module can be run afterwards in a new module layer.
+ */
+final class Compilation {
+
+	private final Path output;
+	private final String moduleName;
+	private final List<Path> modulePath;
+	private final List<String> errors;
+
+
+	/**
+	 * @param sources The source files of the module, including <tt>module-info.java</tt>,
+	 *                mapped by its path relative to the source folder
+	 */
+	static Compilation of(
+		Path folder,
+		String moduleName,
+		Map<String,String> sources,
+		String... options
+	) throws IOException {
+		Path sourceFolder = folder.resolve("src");
+		Path output = folder.resolve("out");
+		Files.createDirectories(output);
+		List<File> sourceFiles = new ArrayList<>();
+		for (var source : sources.entrySet()) {
+			Path file = sourceFolder.resolve(source.getKey());
+			Files.createDirectories(file.getParent());
+			Files.writeString(file, source.getValue(), StandardCharsets.UTF_8);
+			sourceFiles.add(file.toFile());
+		}
+		var modulePath = modulePath();
+		var compiler = ToolProvider.getSystemJavaCompiler();
+		var diagnostics = new DiagnosticCollector<JavaFileObject>();
+		try (var fileManager = compiler.getStandardFileManager(diagnostics, Locale.ROOT, StandardCharsets.UTF_8)) {
+			List<String> arguments = new ArrayList<>(List.of(
+				"--module-path", modulePath.stream().map(Path::toString).collect(joining(File.pathSeparator)),
+				"-d", output.toString()
+			));
+			arguments.addAll(List.of(options));
+			var task = compiler.getTask(
+				null,
+				fileManager,
+				diagnostics,
+				arguments,
+				null,
+				fileManager.getJavaFileObjectsFromFiles(sourceFiles)
+			);
+			task.setProcessors(List.of(new JextenProcessor()));
+			task.call();
+		}
+		var errors = diagnostics.getDiagnostics().stream()
+			.filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+			.map(diagnostic -> diagnostic.getMessage(Locale.ROOT))
+			.toList();
+		return new Compilation(output, moduleName, modulePath, errors);
+	}
+
+
+	/*
+	 * Every module found in the test classpath, removing duplicates
+	 */
+	private static List<Path> modulePath() {
+		Map<String,Path> modules = new LinkedHashMap<>();
+		for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+			try {
+				ModuleFinder.of(Path.of(entry)).findAll().forEach(module -> module.location()
+					.filter(location -> location.getScheme().equals("file"))
+					.ifPresent(location -> modules.putIfAbsent(module.descriptor().name(), Path.of(location)))
+				);
+			} catch (FindException e) {
+				// not usable as a module
+			}
+		}
+		return List.copyOf(modules.values());
+	}
+
+
+	private Compilation(Path output, String moduleName, List<Path> modulePath, List<String> errors) {
+		this.output = output;
+		this.moduleName = moduleName;
+		this.modulePath = modulePath;
+		this.errors = errors;
+	}
+
+
+	List<String> errors() {
+		return errors;
+	}
+
+
+	boolean succeeded() {
+		return errors.isEmpty();
+	}
+
+
+	Path output(String file) {
+		return output.resolve(file);
+	}
+
+
+	/**
+	 * Run the given public static method of the compiled module, defined in a new
+	 * module layer along with its dependencies
+	 */
+	Object run(String className, String methodName) throws ReflectiveOperationException {
+		var finder = ModuleFinder.of(output);
+		var parent = ModuleLayer.boot();
+		var configuration = parent.configuration().resolve(
+			finder,
+			ModuleFinder.of(modulePath.toArray(Path[]::new)),
+			Set.of(moduleName)
+		);
+		var layer = parent.defineModulesWithOneLoader(configuration, ClassLoader.getPlatformClassLoader());
+		var type = layer.findLoader(moduleName).loadClass(className);
+		try {
+			return type.getMethod(methodName).invoke(null);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw e;
+		}
+	}
+
+}
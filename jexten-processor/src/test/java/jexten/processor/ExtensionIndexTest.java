@@ -0,0 +1,88 @@
+package jexten.processor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ExtensionIndexTest {
+
+	private static final String INDEX = "META-INF/extensions.index";
+
+	private static final Map<String,String> SOURCES = Map.of(
+		"module-info.java", """
+			module fixture {
+				requires jexten;
+				exports fixture;
+				opens fixture to jexten;
+				uses fixture.Greeter;
+				provides fixture.Greeter with fixture.TabbedGreeter;
+			}
+			""",
+		"fixture/Greeter.java", """
+			package fixture;
+			@jexten.ExtensionPoint
+			public interface Greeter {
+				String greet();
+			}
+			""",
+		"fixture/TabbedGreeter.java", """
+			package fixture;
+			@jexten.Extension(name = "tabbed\\tname\\nwith \\\\ breaks")
+			public class TabbedGreeter implements Greeter {
+				public String greet() {
+					return "hello";
+				}
+			}
+			""",
+		"fixture/Main.java", """
+			package fixture;
+			import java.util.stream.Stream;
+			import jexten.ExtensionManager;
+			public class Main {
+				public static String greetByIndexedName() {
+					return ExtensionManager.create(() -> Stream.of(Main.class.getModule().getLayer()))
+						.getExtensionByName(Greeter.class, "renamed\\tin\\rindex")
+						.map(Greeter::greet)
+						.orElse("not found");
+				}
+			}
+			"""
+	);
+
+	@TempDir
+	Path folder;
+
+
+	@Test
+	void indexFieldsAreEscapedInOneLinePerExtension() throws IOException {
+		var compilation = Compilation.of(folder, "fixture", SOURCES);
+		assertEquals(List.of(), compilation.errors());
+		assertEquals(
+			List.of(
+				"# jexten-index 2",
+				"fixture.TabbedGreeter\tfixture.Greeter\tNORMAL\tLOCAL\ttabbed\\tname\\nwith \\\\ breaks\t1.0\tjexten.ExtensionLoader"
+			),
+			Files.readAllLines(compilation.output(INDEX), StandardCharsets.UTF_8)
+		);
+	}
+
+
+	@Test
+	void escapedIndexFieldsAreReadByTheExtensionManager() throws Exception {
+		var compilation = Compilation.of(folder, "fixture", SOURCES);
+		assertEquals(List.of(), compilation.errors());
+		// the index takes precedence over the annotation, so the renamed extension must be found
+		Path index = compilation.output(INDEX);
+		Files.writeString(
+			index,
+			Files.readString(index).replace("tabbed\\tname\\nwith \\\\ breaks", "renamed\\tin\\rindex")
+		);
+		assertEquals("hello", compilation.run("fixture.Main", "greetByIndexedName"));
+	}
+
+}
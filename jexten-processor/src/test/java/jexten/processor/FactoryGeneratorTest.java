@@ -0,0 +1,182 @@
+package jexten.processor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FactoryGeneratorTest {
+
+	private static final String OPTION = "-A" + FactoryGenerator.OPTION + "=true";
+	private static final String INJECTORS_OPTION = "-A" + InjectorGenerator.OPTION + "=true";
+
+	// the package is not opened to jexten, so the constructor can only be invoked by a generated factory
+	private static final String MODULE_INFO = """
+		module fixture {
+			requires jexten;
+			exports fixture;
+			uses fixture.Greeter;
+			uses fixture.Name;
+			provides fixture.Greeter with fixture.ConstructedGreeter;
+			provides fixture.Name with fixture.WorldName;
+		}
+		""";
+
+	private static final String GREETER = """
+		package fixture;
+		@jexten.ExtensionPoint
+		public interface Greeter {
+			String greet();
+		}
+		""";
+
+	private static final String NAME = """
+		package fixture;
+		@jexten.ExtensionPoint
+		public interface Name {
+			String name();
+		}
+		""";
+
+	private static final String WORLD_NAME = """
+		package fixture;
+		@jexten.Extension
+		public class WorldName implements Name {
+			public String name() {
+				return "world";
+			}
+		}
+		""";
+
+	private static final String CONSTRUCTED_GREETER = """
+		package fixture;
+		import java.util.List;
+		import jexten.Inject;
+		@jexten.Extension
+		public class ConstructedGreeter implements Greeter {
+			public static ConstructedGreeter provider() {
+				return ConstructedGreeter_JextenFactory.provider();
+			}
+			private final Name name;
+			private final List<Name> names;
+			@Inject
+			ConstructedGreeter(Name name, List<Name> names) {
+				this.name = name;
+				this.names = names;
+			}
+			public String greet() {
+				return "hello " + name.name() + " " + names.size();
+			}
+		}
+		""";
+
+	// invokes the service loader provider, as custom loaders are meant to do
+	private static final String PROVIDER_LOADER = """
+		package fixture;
+		import java.util.Optional;
+		import java.util.ServiceLoader.Provider;
+		import jexten.*;
+		public class ProviderLoader implements ExtensionLoader {
+			public <T> Optional<T> load(Provider<T> provider, Scope scope) {
+				return Optional.of(provider.get());
+			}
+		}
+		""";
+
+	private static final String MAIN = """
+		package fixture;
+		import java.util.ServiceLoader;
+		import java.util.stream.Stream;
+		import jexten.ExtensionManager;
+		public class Main {
+			public static String greet() {
+				return ExtensionManager.create(() -> Stream.of(Main.class.getModule().getLayer()))
+					.getExtension(Greeter.class)
+					.map(Greeter::greet)
+					.orElse("not found");
+			}
+			public static String greetWithServiceLoader() {
+				return ServiceLoader.load(Main.class.getModule().getLayer(), Greeter.class)
+					.findFirst()
+					.map(Greeter::greet)
+					.orElse("not found");
+			}
+		}
+		""";
+
+	@TempDir
+	Path folder;
+
+
+	@Test
+	void generatedFactoryInvokesTheInjectedConstructor() throws Exception {
+		var compilation = Compilation.of(folder, "fixture", sources(CONSTRUCTED_GREETER), OPTION, INJECTORS_OPTION);
+		assertEquals(List.of(), compilation.errors());
+		assertTrue(Files.exists(compilation.output("fixture/ConstructedGreeter_JextenFactory.class")));
+		assertFalse(Files.exists(compilation.output("fixture/WorldName_JextenFactory.class")));
+		assertEquals("hello world 1", compilation.run("fixture.Main", "greet"));
+	}
+
+
+	@Test
+	void generatedFactoryIsUsedWhenACustomLoaderInvokesTheProvider() throws Exception {
+		var compilation = Compilation.of(folder, "fixture", sources(CONSTRUCTED_GREETER.replace(
+			"@jexten.Extension\npublic class",
+			"@jexten.Extension(loadedWith = ProviderLoader.class)\npublic class"
+		)), OPTION, INJECTORS_OPTION);
+		assertEquals(List.of(), compilation.errors());
+		assertEquals("hello world 1", compilation.run("fixture.Main", "greet"));
+	}
+
+
+	@Test
+	void providerMethodFailsOutsideAnExtensionManager() throws IOException {
+		var compilation = Compilation.of(folder, "fixture", sources(CONSTRUCTED_GREETER), OPTION, INJECTORS_OPTION);
+		assertEquals(List.of(), compilation.errors());
+		var error = assertThrows(
+			InvocationTargetException.class,
+			() -> compilation.run("fixture.Main", "greetWithServiceLoader")
+		).getCause();
+		assertTrue(error instanceof ServiceConfigurationError, error::toString);
+		assertTrue(error.getCause() instanceof IllegalStateException, error::toString);
+	}
+
+
+	@Test
+	void injectedConstructorsRequireTheOptionToBeEnabled() throws IOException {
+		var compilation = Compilation.of(folder, "fixture", sources(CONSTRUCTED_GREETER), INJECTORS_OPTION);
+		assertTrue(compilation.errors().stream().anyMatch(error ->
+			error.contains("Injected constructor of fixture.ConstructedGreeter requires option " + FactoryGenerator.OPTION)
+		), compilation.errors()::toString);
+	}
+
+
+	@Test
+	void injectedConstructorsRequireAProviderMethod() throws IOException {
+		var compilation = Compilation.of(folder, "fixture", sources(CONSTRUCTED_GREETER.replace(
+			"public static ConstructedGreeter provider() {\n\t\treturn ConstructedGreeter_JextenFactory.provider();\n\t}\n",
+			""
+		)), OPTION, INJECTORS_OPTION);
+		assertTrue(compilation.errors().stream().anyMatch(error ->
+			error.contains("Extension fixture.ConstructedGreeter with an injected constructor must declare")
+		), compilation.errors()::toString);
+	}
+
+
+	private static Map<String,String> sources(String constructedGreeter) {
+		return Map.of(
+			"module-info.java", MODULE_INFO,
+			"fixture/Greeter.java", GREETER,
+			"fixture/Name.java", NAME,
+			"fixture/WorldName.java", WORLD_NAME,
+			"fixture/ConstructedGreeter.java", constructedGreeter,
+			"fixture/ProviderLoader.java", PROVIDER_LOADER,
+			"fixture/Main.java", MAIN
+		);
+	}
+
+}
@@ -0,0 +1,165 @@
+package jexten.processor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class InjectorGeneratorTest {
+
+	private static final String OPTION = "-A" + InjectorGenerator.OPTION + "=true";
+
+	// the package is not opened to jexten, so fields can only be injected by a generated injector
+	private static final String MODULE_INFO = """
+		module fixture {
+			requires jexten;
+			exports fixture;
+			uses fixture.Greeter;
+			uses fixture.Name;
+			provides fixture.Greeter with fixture.InjectedGreeter;
+			provides fixture.Name with fixture.WorldName;
+		}
+		""";
+
+	private static final String GREETER = """
+		package fixture;
+		@jexten.ExtensionPoint
+		public interface Greeter {
+			String greet();
+		}
+		""";
+
+	private static final String NAME = """
+		package fixture;
+		@jexten.ExtensionPoint
+		public interface Name {
+			String name();
+		}
+		""";
+
+	private static final String WORLD_NAME = """
+		package fixture;
+		@jexten.Extension
+		public class WorldName implements Name {
+			public String name() {
+				return "world";
+			}
+		}
+		""";
+
+	private static final String INJECTED_GREETER = """
+		package fixture;
+		import java.util.List;
+		import jexten.Inject;
+		@jexten.Extension
+		public class InjectedGreeter implements Greeter {
+			@Inject Name name;
+			@Inject List<Name> names;
+			public String greet() {
+				return "hello " + name.name() + " " + names.size();
+			}
+		}
+		""";
+
+	private static final String MAIN = """
+		package fixture;
+		import java.util.stream.Stream;
+		import jexten.ExtensionManager;
+		public class Main {
+			public static String greet() {
+				return ExtensionManager.create(() -> Stream.of(Main.class.getModule().getLayer()))
+					.getExtension(Greeter.class)
+					.map(Greeter::greet)
+					.orElse("not found");
+			}
+		}
+		""";
+
+	@TempDir
+	Path folder;
+
+
+	@Test
+	void generatedInjectorAssignsFieldsWithoutReflectiveAccess() throws Exception {
+		var compilation = Compilation.of(folder, "fixture", Map.of(
+			"module-info.java", MODULE_INFO,
+			"fixture/Greeter.java", GREETER,
+			"fixture/Name.java", NAME,
+			"fixture/WorldName.java", WORLD_NAME,
+			"fixture/InjectedGreeter.java", INJECTED_GREETER,
+			"fixture/Main.java", MAIN
+		), OPTION);
+		assertEquals(List.of(), compilation.errors());
+		assertTrue(Files.exists(compilation.output("fixture/InjectedGreeter_JextenInjector.class")));
+		assertFalse(Files.exists(compilation.output("fixture/WorldName_JextenInjector.class")));
+		assertEquals("hello world 1", compilation.run("fixture.Main", "greet"));
+	}
+
+
+	@Test
+	void injectedNamesWithControlCharactersAreEscapedInGeneratedInjectors() throws Exception {
+		// as written in the fixture sources: line breaks, tabs, quotes, backslashes and other control characters
+		String name = "line\\nbreak\\r\\ttab \\\"quoted\\\" back\\\\slash \\u0001 control";
+		var compilation = Compilation.of(folder, "fixture", Map.of(
+			"module-info.java", MODULE_INFO,
+			"fixture/Greeter.java", GREETER,
+			"fixture/Name.java", NAME,
+			"fixture/WorldName.java", WORLD_NAME.replace("@jexten.Extension", "@jexten.Extension(name = \"" + name + "\")"),
+			"fixture/InjectedGreeter.java", INJECTED_GREETER.replace("@Inject Name name;", "@Inject(\"" + name + "\") Name name;"),
+			"fixture/Main.java", MAIN
+		), OPTION);
+		assertEquals(List.of(), compilation.errors());
+		assertEquals("hello world 1", compilation.run("fixture.Main", "greet"));
+	}
+
+
+	@Test
+	void injectorsAreNotGeneratedUnlessEnabled() throws IOException {
+		var compilation = Compilation.of(folder, "fixture", Map.of(
+			"module-info.java", MODULE_INFO.replace("exports fixture;", "exports fixture;\n\topens fixture to jexten;"),
+			"fixture/Greeter.java", GREETER,
+			"fixture/Name.java", NAME,
+			"fixture/WorldName.java", WORLD_NAME,
+			"fixture/InjectedGreeter.java", INJECTED_GREETER
+		));
+		assertEquals(List.of(), compilation.errors());
+		assertFalse(Files.exists(compilation.output("fixture/InjectedGreeter_JextenInjector.class")));
+	}
+
+
+	@Test
+	void privateInjectedFieldsAreRejected() throws IOException {
+		var compilation = Compilation.of(folder, "fixture", Map.of(
+			"module-info.java", MODULE_INFO,
+			"fixture/Greeter.java", GREETER,
+			"fixture/Name.java", NAME,
+			"fixture/WorldName.java", WORLD_NAME,
+			"fixture/InjectedGreeter.java", INJECTED_GREETER.replace("@Inject Name name;", "@Inject private Name name;")
+		), OPTION);
+		assertTrue(compilation.errors().stream().anyMatch(error ->
+			error.contains("Injected field fixture.InjectedGreeter.name cannot be private or final")
+		), compilation.errors()::toString);
+	}
+
+
+	@Test
+	void opensDirectiveIsStillRequiredByPostConstructMethods() throws IOException {
+		var compilation = Compilation.of(folder, "fixture", Map.of(
+			"module-info.java", MODULE_INFO,
+			"fixture/Greeter.java", GREETER,
+			"fixture/Name.java", NAME,
+			"fixture/WorldName.java", WORLD_NAME.replace(
+				"public String name() {",
+				"@jexten.PostConstruct void init() { }\n\tpublic String name() {"
+			),
+			"fixture/InjectedGreeter.java", INJECTED_GREETER
+		), OPTION);
+		assertTrue(compilation.errors().stream().anyMatch(error ->
+			error.contains("Extension point package fixture must be opened to jexten")
+		), compilation.errors()::toString);
+	}
+
+}
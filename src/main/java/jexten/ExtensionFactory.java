@@ -0,0 +1,56 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten;
+
+import java.util.List;
+
+/**
+ * This interface is implemented by the factories generated at compile time by
+ * the <tt>jexten-processor</tt> when the option <tt>-Ajexten.factories=true</tt>
+ * is used. A factory is generated for every extension with a constructor annotated
+ * with {@link Inject}, and it invokes such constructor directly with the values
+ * resolved by the {@link ExtensionManager} for each parameter. That way, the
+ * extension can keep its dependencies in final fields, and it is instantiated
+ * without reflection.
+ * <p>
+ * The Java {@link java.util.ServiceLoader} requires the extension to have either a
+ * public no-arg constructor or a public static <tt>provider()</tt> method, so the
+ * extension must declare the latter, delegating to the generated factory:
+ * <pre>
+ * public static MyExtension provider() {
+ *     return MyExtension_JextenFactory.provider();
+ * }
+ * </pre>
+ * The extension manager always uses the factory instead, so the <tt>provider()</tt>
+ * method fails if it is invoked by the service loader directly.
+ * Clients are not required to implement this interface. Generated factories
+ * are named after the binary name of the extension class followed by {@link #SUFFIX}.
+ */
+public interface ExtensionFactory<T> {
+
+    String SUFFIX = "_JextenFactory";
+
+
+    /**
+     * Static description of an injectable constructor parameter
+     * @param type The declared type of the parameter (erasure)
+     * @param elementType The type of the values to inject, that is, the component type
+     *                    for arrays and collections, or the parameter type otherwise
+     * @param name The name of the requested extension as declared by {@link Inject#value()}
+     */
+    record InjectedParameter(Class<?> type, Class<?> elementType, String name) { }
+
+
+    /**
+     * @return The parameters of the injected constructor, in order
+     */
+    List<InjectedParameter> injectedParameters();
+
+
+    /**
+     * Invoke the injected constructor
+     * @param arguments The value of each parameter described by {@link #injectedParameters()}
+     */
+    T newInstance(Object[] arguments);
+
+}
@@ -0,0 +1,43 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A handle to the extensions of an extension point that match a filter, obtained
+ * once via {@link ExtensionManager#handle(Class, java.util.function.Predicate)}
+ * and meant to be kept by frequently executed code.
+ * <p>
+ * As long as every matching extension has {@link Scope#GLOBAL} or {@link Scope#LOCAL}
+ * scope, the extensions are resolved only once and kept by the handle, so
+ * {@link #get()} and {@link #all()} return them without performing any lookup. The
+ * handle is resolved again when the {@link ModuleLayerProvider} notifies a change
+ * of the module layers or reports a new {@link ModuleLayerProvider#version()}, or
+ * after {@link ExtensionManager#clear()} is invoked.
+ * <p>
+ * Otherwise (that is, if any matching extension has {@link Scope#TRANSIENT} scope or
+ * is created by a custom {@link ExtensionLoader}), each invocation performs a regular
+ * lookup, returning new instances when required.
+ */
+public interface ExtensionHandle<T> {
+
+    /**
+     * @return The extension point of this handle
+     */
+    Class<T> extensionPoint();
+
+    /**
+     * @return The extension with the highest priority, as returned by
+     *         {@link ExtensionManager#getExtension(Class, java.util.function.Predicate)}
+     */
+    Optional<T> get();
+
+    /**
+     * @return An unmodifiable list of every extension, sorted by priority, as returned by
+     *         {@link ExtensionManager#getExtensions(Class, java.util.function.Predicate)}
+     */
+    List<T> all();
+
+}
@@ -0,0 +1,48 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten;
+
+import java.util.List;
+
+/**
+ * This interface is implemented by the injectors generated at compile time by
+ * the <tt>jexten-processor</tt> when the option <tt>-Ajexten.injectors=true</tt>
+ * is used. A generated injector assigns the {@link Inject} fields of an extension
+ * directly, so the {@link ExtensionManager} does not need reflective access
+ * to them (and the package does not need to be opened).
+ * <p>
+ * Clients are not required to implement this interface. Generated injectors
+ * are named after the binary name of the extension class followed by {@link #SUFFIX}.
+ */
+public interface ExtensionInjector<T> {
+
+    String SUFFIX = "_JextenInjector";
+
+
+    /**
+     * Static description of an injectable field
+     * @param field The name of the field
+     * @param type The declared type of the field (erasure)
+     * @param elementType The type of the values to inject, that is, the component type
+     *                    for arrays and collections, or the field type otherwise
+     * @param name The name of the requested extension as declared by {@link Inject#value()}
+     */
+    record InjectedField(String field, Class<?> type, Class<?> elementType, String name) { }
+
+
+    /**
+     * @return The injectable fields of the extension, in the order expected by
+     *         {@link #inject(Object, int, Object)}
+     */
+    List<InjectedField> injectedFields();
+
+
+    /**
+     * Assign a value to an injectable field of the extension
+     * @param extension The extension instance
+     * @param index The index of the field within {@link #injectedFields()}
+     * @param value The value to assign
+     */
+    void inject(T extension, int index, Object value);
+
+}
@@ -2,6 +2,7 @@
 
 package jexten;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
@@ -23,6 +24,16 @@ public interface ExtensionManager {
 
     ExtensionManager withInjectionProvider(InjectionProvider injectionProvider);
 
+    /**
+     * @return A new extension manager that notifies its activity to the given listener,
+     *         in addition to any listener already registered
+     * @throws UnsupportedOperationException if the implementation does not support
+     *         listeners, which is the default
+     */
+    default ExtensionManager withListener(ExtensionManagerListener listener) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support listeners");
+    }
+
     <T> Optional<T> getExtension(Class<T> extensionPoint);
 
     <T> Optional<T> getExtension(Class<T> extensionPoint, Predicate<Class<?>> filter);
@@ -37,6 +48,39 @@ public interface ExtensionManager {
 
     <T> Stream<T> getExtensionsByName(Class<T> extensionPoint, Predicate<String> filter);
 
+    /**
+     * @return A handle to every extension of the given extension point
+     * @see ExtensionHandle
+     */
+    default <T> ExtensionHandle<T> handle(Class<T> extensionPoint) {
+        return handle(extensionPoint, x -> true);
+    }
+
+    /**
+     * Get a handle to the extensions of the given extension point whose class
+     * satisfies the given filter.
+     * <p>
+     * By default, the handle does not keep the extensions and each invocation
+     * performs a regular lookup, so implementations should override it.
+     * @see ExtensionHandle
+     */
+    default <T> ExtensionHandle<T> handle(Class<T> extensionPoint, Predicate<Class<?>> filter) {
+        return new ExtensionHandle<>() {
+            @Override
+            public Class<T> extensionPoint() {
+                return extensionPoint;
+            }
+            @Override
+            public Optional<T> get() {
+                return getExtension(extensionPoint, filter);
+            }
+            @Override
+            public List<T> all() {
+                return getExtensions(extensionPoint, filter).toList();
+            }
+        };
+    }
+
     void clear();
 
 }
@@ -0,0 +1,144 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten;
+
+/**
+ * This interface allows to observe the internal activity of an {@link ExtensionManager},
+ * for example in order to export metrics. It is registered via
+ * {@link ExtensionManager#withListener(ExtensionManagerListener)}.
+ * <p>
+ * Every method has an empty default implementation, so clients only have to
+ * override the events they are interested in. Notice that callbacks are invoked
+ * synchronously within the lookup thread, so implementations should be fast and
+ * thread-safe. When no listener is registered, the extension manager does not
+ * even measure the durations.
+ * <p>
+ * All durations are expressed in nanoseconds.
+ */
+public interface ExtensionManagerListener {
+
+
+    /**
+     * The internal caches reported by {@link #cacheHit(Cache, Class)} and
+     * {@link #cacheMiss(Cache, Class)}
+     */
+    enum Cache {
+        /** Validated providers of an extension point */
+        PROVIDER_INDEX,
+        /** Instances of {@link Scope#GLOBAL} extensions */
+        GLOBAL_INSTANCE,
+        /** Instances of {@link Scope#LOCAL} extensions */
+        LOCAL_INSTANCE,
+        /** Injectable fields of an extension class */
+        INJECTION_PLAN,
+        /** {@link PostConstruct} methods of an extension class */
+        POST_CONSTRUCT
+    }
+
+
+    /**
+     * A lookup of an extension point has started
+     */
+    default void lookupStarted(Class<?> extensionPoint) { }
+
+
+    /**
+     * A lookup of an extension point has finished. The duration only covers locating
+     * the candidate providers of the extension point, since the instantiation of the
+     * extensions is notified separately (and, for lookups returning a stream, it only
+     * happens when the stream is consumed).
+     */
+    default void lookupFinished(Class<?> extensionPoint, long duration) { }
+
+
+    /**
+     * A provider of an extension point has been validated (this only happens
+     * once per extension class, until the manager is cleared)
+     */
+    default void providerValidated(Class<?> extensionPoint, Class<?> extension, boolean valid) { }
+
+
+    /**
+     * A new instance of an extension has been created by the extension manager
+     */
+    default void extensionInstantiated(Class<?> extension, Scope scope, long duration) { }
+
+
+    /**
+     * The load of an extension has been delegated to a custom {@link ExtensionLoader}
+     */
+    default void loaderDelegated(
+        Class<?> extension,
+        Class<? extends ExtensionLoader> loader,
+        Scope scope,
+        long duration
+    ) { }
+
+
+    /**
+     * The injectable fields of an extension have been assigned. Notice that the
+     * duration includes the lookups of the injected extensions.
+     */
+    default void extensionInjected(Class<?> extension, long duration) { }
+
+
+    default void cacheHit(Cache cache, Class<?> key) { }
+
+
+    default void cacheMiss(Cache cache, Class<?> key) { }
+
+
+    /**
+     * @return A listener that forwards every event to both listeners
+     */
+    static ExtensionManagerListener compose(ExtensionManagerListener first, ExtensionManagerListener second) {
+        return new ExtensionManagerListener() {
+            @Override
+            public void lookupStarted(Class<?> extensionPoint) {
+                first.lookupStarted(extensionPoint);
+                second.lookupStarted(extensionPoint);
+            }
+            @Override
+            public void lookupFinished(Class<?> extensionPoint, long duration) {
+                first.lookupFinished(extensionPoint, duration);
+                second.lookupFinished(extensionPoint, duration);
+            }
+            @Override
+            public void providerValidated(Class<?> extensionPoint, Class<?> extension, boolean valid) {
+                first.providerValidated(extensionPoint, extension, valid);
+                second.providerValidated(extensionPoint, extension, valid);
+            }
+            @Override
+            public void extensionInstantiated(Class<?> extension, Scope scope, long duration) {
+                first.extensionInstantiated(extension, scope, duration);
+                second.extensionInstantiated(extension, scope, duration);
+            }
+            @Override
+            public void loaderDelegated(
+                Class<?> extension,
+                Class<? extends ExtensionLoader> loader,
+                Scope scope,
+                long duration
+            ) {
+                first.loaderDelegated(extension, loader, scope, duration);
+                second.loaderDelegated(extension, loader, scope, duration);
+            }
+            @Override
+            public void extensionInjected(Class<?> extension, long duration) {
+                first.extensionInjected(extension, duration);
+                second.extensionInjected(extension, duration);
+            }
+            @Override
+            public void cacheHit(Cache cache, Class<?> key) {
+                first.cacheHit(cache, key);
+                second.cacheHit(cache, key);
+            }
+            @Override
+            public void cacheMiss(Cache cache, Class<?> key) {
+                first.cacheMiss(cache, key);
+                second.cacheMiss(cache, key);
+            }
+        };
+    }
+
+}
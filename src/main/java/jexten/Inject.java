@@ -8,11 +8,15 @@ import java.lang.annotation.*;
  * The fields of an extension class that are annotated with <tt>Injected</tt>
  * and have a type of other extension points will be automatically assigned.
  * <p>
+ * Alternatively, a constructor of the extension can be annotated, so its
+ * parameters are assigned instead. This requires the extension factories
+ * generated by the <tt>jexten-processor</tt> (see {@link ExtensionFactory}).
+ * <p>
  * This feature provides a minimal inversion of control mechanism, restricted
  * to extensions managed by the {@link ExtensionManager}.
  */
 @Retention(RetentionPolicy.RUNTIME)
-@Target({ElementType.FIELD, ElementType.PARAMETER})
+@Target({ElementType.FIELD, ElementType.PARAMETER, ElementType.CONSTRUCTOR})
 public @interface Inject {
 
     /**
@@ -25,9 +25,67 @@ public interface ModuleLayerProvider {
     }
 
     static ModuleLayerProvider compose(ModuleLayerProvider... moduleLayerProviders) {
-        return () -> Stream.of(moduleLayerProviders).flatMap(ModuleLayerProvider::moduleLayers);
+        return new ModuleLayerProvider() {
+            @Override
+            public Stream<ModuleLayer> moduleLayers() {
+                return Stream.of(moduleLayerProviders).flatMap(ModuleLayerProvider::moduleLayers);
+            }
+            @Override
+            public Stream<ModuleLayer> moduleLayers(Class<?> extensionPoint) {
+                return Stream.of(moduleLayerProviders).flatMap(it -> it.moduleLayers(extensionPoint));
+            }
+            @Override
+            public void addChangeListener(Runnable listener) {
+                for (var moduleLayerProvider : moduleLayerProviders) {
+                    moduleLayerProvider.addChangeListener(listener);
+                }
+            }
+            @Override
+            public long version() {
+                // every version only increases, so the sum changes whenever any of them does
+                return Stream.of(moduleLayerProviders).mapToLong(ModuleLayerProvider::version).sum();
+            }
+        };
     }
 
     Stream<ModuleLayer> moduleLayers();
 
+
+    /**
+     * Provide the module layers that would be used to locate the extensions of the
+     * given extension point. Implementations aware of which layers may contain such
+     * extensions can omit the rest, or even define them only when requested.
+     * <p>
+     * By default, every module layer is provided.
+     */
+    default Stream<ModuleLayer> moduleLayers(Class<?> extensionPoint) {
+        return moduleLayers();
+    }
+
+
+    /**
+     * Register a listener that will be notified each time the provided module layers
+     * change, so any information obtained from the previous layers can be refreshed.
+     * <p>
+     * By default, the module layers are considered immutable and the listener is
+     * never notified.
+     */
+    default void addChangeListener(Runnable listener) {
+        // nothing to notify
+    }
+
+
+    /**
+     * Provide a number that increases each time the provided module layers change,
+     * so users of this provider can know whether the layers they obtained are still
+     * current without requesting them again. Changes notified to the change
+     * listeners do not need to increase the version.
+     * <p>
+     * By default, the module layers are considered immutable and the version is
+     * always the same.
+     */
+    default long version() {
+        return 0L;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,89 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.internal;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+import jexten.ExtensionHandle;
+
+
+/**
+ * Handle that keeps the extensions resolved by the extension manager until the
+ * manager generation or the version of the module layers changes.
+ * <p>
+ * The resolved extensions are kept in an immutable snapshot along with the
+ * generation and version they were resolved for, so reading them only requires
+ * comparing two numbers.
+ */
+final class DefaultExtensionHandle<T> implements ExtensionHandle<T> {
+
+	/*
+	 * A null list of extensions means that they cannot be kept, so a regular
+	 * lookup is required each time
+	 */
+	private record Snapshot<T>(long generation, long layersVersion, Optional<T> first, List<T> all) {
+		boolean isStable() {
+			return all != null;
+		}
+	}
+
+
+	private final DefaultExtensionManager manager;
+	private final Class<T> extensionPoint;
+	private final Predicate<Class<?>> filter;
+	private volatile Snapshot<T> snapshot;
+
+
+	DefaultExtensionHandle(
+		DefaultExtensionManager manager,
+		Class<T> extensionPoint,
+		Predicate<Class<?>> filter
+	) {
+		this.manager = manager;
+		this.extensionPoint = extensionPoint;
+		this.filter = filter;
+	}
+
+
+	@Override
+	public Class<T> extensionPoint() {
+		return extensionPoint;
+	}
+
+
+	@Override
+	public Optional<T> get() {
+		var current = currentSnapshot();
+		return current.isStable() ? current.first() : manager.getExtension(extensionPoint, filter);
+	}
+
+
+	@Override
+	public List<T> all() {
+		var current = currentSnapshot();
+		return current.isStable() ? current.all() : manager.getExtensions(extensionPoint, filter).toList();
+	}
+
+
+	@Override
+	public String toString() {
+		return "ExtensionHandle[" + extensionPoint.getCanonicalName() + "]";
+	}
+
+
+	private Snapshot<T> currentSnapshot() {
+		// both are read before resolving, so a concurrent change forces another refresh
+		long generation = manager.generation();
+		long layersVersion = manager.layersVersion();
+		var current = snapshot;
+		if (current == null || current.generation() != generation || current.layersVersion() != layersVersion) {
+			current = manager.stableExtensions(extensionPoint, filter)
+				.map(all -> new Snapshot<>(generation, layersVersion, all.stream().findFirst(), all))
+				.orElseGet(() -> new Snapshot<>(generation, layersVersion, Optional.empty(), null));
+			snapshot = current;
+		}
+		return current;
+	}
+
+}
@@ -2,14 +2,16 @@
 
 package jexten.internal;
 
+import java.lang.invoke.*;
 import java.lang.reflect.*;
 import java.util.stream.*;
-import static java.util.stream.Collectors.toSet;
 
 import java.lang.annotation.Annotation;
+import java.lang.ref.WeakReference;
 import java.util.*;
 import java.util.ServiceLoader.Provider;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 
 import jexten.*;
@@ -20,60 +22,126 @@ public class DefaultExtensionManager implements ExtensionManager {
 
 	protected static final Logger LOGGER = LoggerFactory.getLogger(DefaultExtensionManager.class);
 
+	private static final MethodType POST_CONSTRUCT_TYPE = MethodType.methodType(void.class, Object.class);
+
+
+	private record PostConstructMethod(String name, MethodHandle handle) { }
+
+
+	/*
+	 * Layer providers usually outlive the managers using them, so the listener
+	 * must not keep the managers reachable. It is registered once and shared with
+	 * the managers derived from the first one, purging the collected ones.
+	 */
+	private static final class LayerChangeListener implements Runnable {
+
+		private final List<WeakReference<DefaultExtensionManager>> managers = new ArrayList<>();
+
+		private synchronized void add(DefaultExtensionManager manager) {
+			managers.removeIf(it -> it.get() == null);
+			managers.add(new WeakReference<>(manager));
+		}
+
+		@Override
+		public void run() {
+			List<DefaultExtensionManager> current;
+			synchronized (this) {
+				managers.removeIf(it -> it.get() == null);
+				current = managers.stream().map(WeakReference::get).filter(Objects::nonNull).toList();
+			}
+			for (var manager : current) {
+				manager.layersChanged = true;
+				manager.generation.incrementAndGet();
+			}
+		}
+	}
+
+
 
 	private final ModuleLayerProvider layerProvider;
-	private static final Map<Class<?>, Object> singletons = new ConcurrentHashMap<>();
 	private final Map<Class<?>, Object> locals = new ConcurrentHashMap<>();
 	private final Set<Class<?>> invalidExtensions = ConcurrentHashMap.newKeySet();
 	private final Set<Class<?>> validExtensions = ConcurrentHashMap.newKeySet();
+	private final Map<Class<?>, ProviderIndex<?>> providerIndexes = new ConcurrentHashMap<>();
+	private final Map<Module, ExtensionIndex> extensionIndexes = new ConcurrentHashMap<>();
+	private final Map<Class<?>, InjectionPlan> injectionPlans = new ConcurrentHashMap<>();
+	private final Map<Class<?>, Optional<ExtensionFactory<Object>>> extensionFactories = new ConcurrentHashMap<>();
+	private final Map<Class<?>, List<PostConstructMethod>> postConstructMethods = new ConcurrentHashMap<>();
 	private final InjectionProvider injectionProvider;
+	// shared with the managers derived from this one
+	private final SingletonRegistry singletons;
+	// shared with the managers derived from this one
+	private final LayerChangeListener layerChangeListener;
+	// null when no listener is registered, so no event is even measured
+	private final ExtensionManagerListener listener;
+	// set when the layer provider notifies a change, so stale entries are purged in the next lookup
+	private volatile boolean layersChanged;
+	// incremented each time the resolved extensions may change, so handles are refreshed
+	private final AtomicLong generation = new AtomicLong();
 
 
 	private DefaultExtensionManager(
 		ModuleLayerProvider layerProvider,
-		InjectionProvider injectionProvider
+		InjectionProvider injectionProvider,
+		ExtensionManagerListener listener,
+		SingletonRegistry singletons,
+		LayerChangeListener layerChangeListener
 	) {
 		this.layerProvider = layerProvider;
+		this.singletons = singletons;
 		this.injectionProvider = injectionProvider;
+		this.listener = listener;
+		this.layerChangeListener = layerChangeListener;
+		layerChangeListener.add(this);
 	}
 
 
 	public DefaultExtensionManager(ModuleLayerProvider layerProvider) {
-		this(layerProvider, InjectionProvider.empty());
+		this(layerProvider, InjectionProvider.empty(), null, new SingletonRegistry(), new LayerChangeListener());
+		layerProvider.addChangeListener(layerChangeListener);
 	}
 
 
 	@Override
 	public ExtensionManager withInjectionProvider(InjectionProvider injectionProvider) {
-		return new DefaultExtensionManager(layerProvider, injectionProvider);
+		return new DefaultExtensionManager(layerProvider, injectionProvider, listener, singletons, layerChangeListener);
+	}
+
+
+	@Override
+	public ExtensionManager withListener(ExtensionManagerListener listener) {
+		Objects.requireNonNull(listener, "listener cannot be null");
+		return new DefaultExtensionManager(
+			layerProvider,
+			injectionProvider,
+			this.listener == null ? listener : ExtensionManagerListener.compose(this.listener, listener),
+			singletons,
+			layerChangeListener
+		);
 	}
 
 
 	@Override
 	public <T> Optional<T> getExtension(Class<T> extensionPoint) {
-		return getExtensions(extensionPoint).findFirst();
+		return getExtension(extensionPoint, x->true);
 	}
 
 
 	@Override
 	public <T> Optional<T> getExtension(Class<T> extensionPoint, Predicate<Class<?>> filter) {
-		return getExtensions(extensionPoint,filter).findFirst();
+		return findExtension(extensionPoint, entry -> filter.test(entry.type()));
 	}
 
 
 	@Override
 	public <T> Optional<T> getExtensionByName(Class<T> extensionPoint, String name) {
-		return getExtensions(extensionPoint)
-			.filter(it -> extensionOf(it).name().equals(name))
-			.findFirst();
+		return findExtension(extensionPoint, entry -> entry.metadata().name().equals(name));
 	}
 
 
 	@Override
 	public <T> Optional<T> getExtensionByName(Class<T> extensionPoint, Predicate<String> filter) {
-		return getExtensions(extensionPoint)
-			.filter(it -> filter.test(extensionOf(it).name()))
-			.findFirst();
+		return findExtension(extensionPoint, entry -> filter.test(entry.metadata().name()));
 	}
 
 
@@ -85,24 +153,48 @@ public class DefaultExtensionManager implements ExtensionManager {
 
 	@Override
 	public <T> Stream<T> getExtensionsByName(Class<T> extensionPoint, Predicate<String> filter) {
-		return getExtensions(extensionPoint, it -> filter.test(extensionOf(it).name()));
+		return streamExtensions(
+			extensionPoint,
+			entry -> filter.test(entry.metadata().name()),
+			new InjectionHandler(this,injectionProvider,LOGGER)
+		);
 	}
 
 	@Override
 	public <T> Stream<T> getExtensions(Class<T> extensionPoint, Predicate<Class<?>> filter) {
-		return getExtensions(
+		return streamExtensions(
 			extensionPoint,
-			filter,
+			entry -> filter.test(entry.type()),
 			new InjectionHandler(this,injectionProvider,LOGGER)
 		);
 	}
 
 
+	@Override
+	public <T> ExtensionHandle<T> handle(Class<T> extensionPoint) {
+		return handle(extensionPoint, x->true);
+	}
+
+
+	@Override
+	public <T> ExtensionHandle<T> handle(Class<T> extensionPoint, Predicate<Class<?>> filter) {
+		Objects.requireNonNull(extensionPoint, "extensionPoint cannot be null");
+		Objects.requireNonNull(filter, "filter cannot be null");
+		return new DefaultExtensionHandle<>(this, extensionPoint, filter);
+	}
+
+
 	@Override
 	public void clear() {
+		generation.incrementAndGet();
 		singletons.clear();
 		validExtensions.clear();
 		invalidExtensions.clear();
+		providerIndexes.clear();
+		extensionIndexes.clear();
+		injectionPlans.clear();
+		extensionFactories.clear();
+		postConstructMethods.clear();
 	}
 
 
@@ -111,26 +203,241 @@ public class DefaultExtensionManager implements ExtensionManager {
 		Predicate<Class<?>> filter,
 		InjectionHandler injection
 	) {
+		return streamExtensions(extensionPoint, entry -> filter.test(entry.type()), injection);
+	}
+
+
+	long generation() {
+		return generation.get();
+	}
+
+
+	long layersVersion() {
+		return layerProvider.version();
+	}
+
+
+	/**
+	 * @return The extensions satisfying the filter, or empty if any of them cannot
+	 *         be kept (that is, it is neither global nor local, or it is created by
+	 *         a custom loader)
+	 */
+	<T> Optional<List<T>> stableExtensions(Class<T> extensionPoint, Predicate<Class<?>> filter) {
+		long start = lookupStarted(extensionPoint);
+		var index = providerIndex(extensionPoint);
+		lookupFinished(extensionPoint, start);
+		var entries = index.entries().stream()
+			.filter(entry -> filter.test(entry.type()))
+			.toList();
+		boolean stable = entries.stream().map(ProviderIndex.Entry::metadata).noneMatch(
+			metadata -> metadata.scope() == Scope.TRANSIENT || metadata.hasCustomLoader()
+		);
+		if (!stable) {
+			return Optional.empty();
+		}
+		var injection = new InjectionHandler(this,injectionProvider,LOGGER);
+		return Optional.of(entries.stream()
+			.map(entry -> instantiate(extensionPoint, entry, injection))
+			.flatMap(Optional::stream)
+			.toList()
+		);
+	}
+
+
+	/**
+	 * @return The metadata of the given extension class, or <code>null</code> if
+	 *         it is not an extension
+	 */
+	ExtensionMetadata metadataOf(Class<?> type) {
+		return extensionIndexes
+			.computeIfAbsent(type.getModule(), module -> ExtensionIndex.of(module, LOGGER))
+			.get(type.getName())
+			.orElseGet(() -> {
+				var annotation = type.getAnnotation(Extension.class);
+				return annotation == null ? null : ExtensionMetadata.of(annotation);
+			});
+	}
+
+
+	InjectionPlan injectionPlanOf(Class<?> type) {
+		if (listener != null) {
+			notifyCache(ExtensionManagerListener.Cache.INJECTION_PLAN, type, injectionPlans.containsKey(type));
+		}
+		return injectionPlans.computeIfAbsent(type, it -> InjectionPlan.of(it, LOGGER));
+	}
+
+
+	private <T> Stream<T> streamExtensions(
+		Class<T> extensionPoint,
+		Predicate<ProviderIndex.Entry<T>> filter,
+		InjectionHandler injection
+	) {
+		long start = lookupStarted(extensionPoint);
+		var entries = providerIndex(extensionPoint).entries();
+		lookupFinished(extensionPoint, start);
+		return entries.stream()
+			.filter(filter)
+			.map(entry -> instantiate(extensionPoint, entry, injection))
+			.flatMap(Optional::stream);
+	}
+
+
+	private <T> Optional<T> findExtension(
+		Class<T> extensionPoint,
+		Predicate<ProviderIndex.Entry<T>> filter
+	) {
+		long start = lookupStarted(extensionPoint);
+		var entries = providerIndex(extensionPoint).entries();
+		lookupFinished(extensionPoint, start);
+		var injection = new InjectionHandler(this,injectionProvider,LOGGER);
+		for (var entry : entries) {
+			if (filter.test(entry)) {
+				var result = instantiate(extensionPoint, entry, injection);
+				if (result.isPresent()) {
+					return result;
+				}
+			}
+		}
+		return Optional.empty();
+	}
+
+
+	private long lookupStarted(Class<?> extensionPoint) {
+		if (listener == null) {
+			return 0L;
+		}
+		listener.lookupStarted(extensionPoint);
+		return System.nanoTime();
+	}
+
+
+	private void lookupFinished(Class<?> extensionPoint, long start) {
+		if (listener != null) {
+			listener.lookupFinished(extensionPoint, System.nanoTime() - start);
+		}
+	}
+
+
+	private void notifyCache(ExtensionManagerListener.Cache cache, Class<?> key, boolean hit) {
+		if (hit) {
+			listener.cacheHit(cache, key);
+		} else {
+			listener.cacheMiss(cache, key);
+		}
+	}
+
+
+	/*
+	 * The providers of an extension point only change when the layer provider
+	 * returns a different set of module layers, so the service discovery, validation
+	 * and sorting is done once per layer snapshot instead of once per lookup.
+	 * Only the layers related to the extension point are requested, so the layer
+	 * provider does not have to define layers that are never used.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> ProviderIndex<T> providerIndex(Class<T> extensionPoint) {
+		var layers = layerProvider.moduleLayers(extensionPoint).toList();
+		if (layersChanged) {
+			layersChanged = false;
+			purgeStaleEntries(extensionPoint, layers);
+		}
+		var index = (ProviderIndex<T>) providerIndexes.get(extensionPoint);
+		boolean hit = index != null && index.isBuiltFor(layers);
+		if (listener != null) {
+			notifyCache(ExtensionManagerListener.Cache.PROVIDER_INDEX, extensionPoint, hit);
+		}
+		if (!hit) {
+			index = buildProviderIndex(extensionPoint, layers);
+			providerIndexes.put(extensionPoint, index);
+		}
+		return index;
+	}
+
+
+	/*
+	 * Every cached entry related to a class that no longer belongs to the current
+	 * module layers (or their ancestors) is discarded, so the class loaders of the
+	 * replaced layers can be collected. The current layers are those of the extension
+	 * points already indexed, so no other layer is requested.
+	 */
+	private void purgeStaleEntries(Class<?> extensionPoint, List<ModuleLayer> layers) {
+		Map<Class<?>,List<ModuleLayer>> currentLayers = new HashMap<>();
+		currentLayers.put(extensionPoint, layers);
+		for (var indexedExtensionPoint : providerIndexes.keySet()) {
+			currentLayers.computeIfAbsent(indexedExtensionPoint, it -> layerProvider.moduleLayers(it).toList());
+		}
+		Set<ModuleLayer> liveLayers = Collections.newSetFromMap(new IdentityHashMap<>());
+		Deque<ModuleLayer> pendingLayers = new ArrayDeque<>();
+		currentLayers.values().forEach(pendingLayers::addAll);
+		while (!pendingLayers.isEmpty()) {
+			var layer = pendingLayers.pop();
+			if (liveLayers.add(layer)) {
+				pendingLayers.addAll(layer.parents());
+			}
+		}
+		Predicate<Module> staleModule = module -> module.getLayer() != null && !liveLayers.contains(module.getLayer());
+		Predicate<Class<?>> staleClass = type -> staleModule.test(type.getModule());
+		providerIndexes.entrySet().removeIf(entry -> !entry.getValue().isBuiltFor(currentLayers.get(entry.getKey())));
+		providerIndexes.keySet().removeIf(staleClass);
+		extensionIndexes.keySet().removeIf(staleModule);
+		locals.keySet().removeIf(staleClass);
+		validExtensions.removeIf(staleClass);
+		invalidExtensions.removeIf(staleClass);
+		injectionPlans.keySet().removeIf(staleClass);
+		extensionFactories.keySet().removeIf(staleClass);
+		postConstructMethods.keySet().removeIf(staleClass);
+		LOGGER.debug("module layers changed, cached entries of discarded layers purged");
+	}
+
+
+	private <T> ProviderIndex<T> buildProviderIndex(Class<T> extensionPoint, List<ModuleLayer> layers) {
 
 		addUseDirective(extensionPoint);
 		validateAnnotatedWith(extensionPoint, ExtensionPoint.class);
+		var specificationVersion = Version.of(extensionPoint.getAnnotation(ExtensionPoint.class).version());
+
+		// shared ancestor layers are visited once, instead of once per layer
+		Map<Class<?>,ProviderIndex.Entry<T>> candidates = new LinkedHashMap<>();
+		LayerProviders.of(extensionPoint, layers, LOGGER).stream()
+			.filter(provider -> !candidates.containsKey(provider.type()))
+			.forEach(provider -> validateProvider(provider, extensionPoint, specificationVersion)
+				.flatMap(metadata -> indexEntry(provider, metadata))
+				.ifPresent(entry -> candidates.put(provider.type(), entry))
+			);
 
-		Set<Provider<T>> candidates =  layerProvider
-			.moduleLayers()
-			.map(layer -> ServiceLoader.load(layer, extensionPoint))
-			.flatMap(ServiceLoader::stream)
-			.filter(provider -> filter.test(provider.type()))
-			.filter(provider -> validateProvider(provider, extensionPoint))
-			.collect(toSet());
-
-		return candidates.stream()
+		var entries = candidates.values().stream()
 			.sorted(this::comparePriority)
-			.map(provider -> instantiate(extensionPoint, provider, injection))
-			.flatMap(Optional::stream);
+			.toList();
+
+		LOGGER.debug("{} valid extensions found for {}", entries.size(), extensionPoint.getCanonicalName());
+		return new ProviderIndex<>(layers, entries);
 	}
 
 
 
+	/*
+	 * Custom loader classes are resolved once per index, so the lookups involve no reflection
+	 */
+	private <T> Optional<ProviderIndex.Entry<T>> indexEntry(Provider<T> provider, ExtensionMetadata metadata) {
+		if (!metadata.hasCustomLoader()) {
+			return Optional.of(new ProviderIndex.Entry<>(provider, metadata, null));
+		}
+		String loaderName = metadata.loadedWith();
+		try {
+			var loaderType = Class.forName(loaderName, false, provider.type().getClassLoader());
+			return Optional.of(new ProviderIndex.Entry<>(provider, metadata, loaderType));
+		} catch (ClassNotFoundException e) {
+			LOGGER.error(
+				"Cannot find extension loader {} for extension {}",
+				loaderName,
+				provider.type().getCanonicalName()
+			);
+			LOGGER.debug("{}",e,e);
+			return Optional.empty();
+		}
+	}
+
+
 	private void addUseDirective(Class<?> type) {
 		Module thisModule = DefaultExtensionManager.class.getModule();
 		try {
@@ -148,54 +455,99 @@ public class DefaultExtensionManager implements ExtensionManager {
 
 	private <T,E> Optional<E> instantiate(
 		Class<T> extensionPoint,
-		Provider<E> provider,
+		ProviderIndex.Entry<E> entry,
 		InjectionHandler injection
 	) {
-		var extensionMetadata = extensionOf(provider);
+		var provider = entry.provider();
+		var extensionMetadata = entry.metadata();
 		ExtensionLoader loader = null;
-		// this is the default value, but it is only the interface, not a real implementation
-		if (extensionMetadata.loadedWith() != ExtensionLoader.class) {
-			loader = (ExtensionLoader) singletons.computeIfAbsent(
-				extensionMetadata.loadedWith(),
-				type->newInstance(type).orElse(null)
-			);
+		if (entry.loaderType() != null) {
+			loader = (ExtensionLoader) singletons.get(entry.loaderType(), this::newInstance).orElse(null);
 		}
 		var scope = extensionMetadata.scope();
 
 		Optional<E> instance;
 
 		if (loader != null) {
-			instance = loader.load(provider, scope);
+			long start = listener == null ? 0L : System.nanoTime();
+			// the provider may use a generated factory, requiring the injection handler
+			var customLoader = loader;
+			instance = injection.bindTo(() -> customLoader.load(provider, scope));
+			if (listener != null) {
+				listener.loaderDelegated(provider.type(), loader.getClass(), scope, System.nanoTime() - start);
+			}
 		} else {
 			instance = switch (scope) {
-				case GLOBAL -> singleton(provider.type());
-				case LOCAL -> local(provider.type());
-				case TRANSIENT -> newInstance(provider.type());
+				case GLOBAL -> singleton(provider.type(), injection);
+				case LOCAL -> local(provider.type(), injection);
+				case TRANSIENT -> newExtension(provider.type(), scope, injection);
 			};
 		}
 
 		return instance
-			.map(extension -> injection.injectExtensions(extensionPoint, extension))
+			.map(extension -> injectExtensions(extensionPoint, extension, injection))
 			.map(this::runPostConstructMethods);
 
 	}
 
 
 
+	private <T> T injectExtensions(Class<?> extensionPoint, T extension, InjectionHandler injection) {
+		if (listener == null) {
+			return injection.injectExtensions(extensionPoint, extension);
+		}
+		long start = System.nanoTime();
+		T injected = injection.injectExtensions(extensionPoint, extension);
+		listener.extensionInjected(extension.getClass(), System.nanoTime() - start);
+		return injected;
+	}
+
+
+	private <T> Optional<T> newExtension(Class<? extends T> type, Scope scope, InjectionHandler injection) {
+		if (listener == null) {
+			return newInstance(type, injection);
+		}
+		long start = System.nanoTime();
+		Optional<T> instance = newInstance(type, injection);
+		if (instance.isPresent()) {
+			listener.extensionInstantiated(type, scope, System.nanoTime() - start);
+		}
+		return instance;
+	}
+
+
+	/*
+	 * Extensions with an injected constructor are created by their generated factory,
+	 * with no reflection involved
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> Optional<T> newInstance(Class<? extends T> type, InjectionHandler injection) {
+		var factory = extensionFactories.computeIfAbsent(type, it -> InjectionPlan.generatedFactory(it, LOGGER));
+		if (factory.isEmpty()) {
+			return newInstance(type);
+		}
+		try {
+			return Optional.of((T) injection.newInstance(factory.get()));
+		} catch (RuntimeException e) {
+			LOGGER.error("Cannot instantiate class {} : {}", type.getCanonicalName(), e.toString());
+			LOGGER.debug("{}",e,e);
+			return Optional.empty();
+		}
+	}
+
+
 	private <T> Optional<T> newInstance(Class<? extends T> type) {
 		try {
 			//
 			// Since the mechanism to detect implementations relies on the Java ServiceLoader,
-			// we can't inject dependencies via constructors;
-			// any attempt to declare a service implementation with no default constructor
-			// will produce the following compiler error:
-			// java: the service implementation does not have a default constructor
-			//
-			// There are ways to detect implementations without using the ServiceLoader; however,
-			// in this library the injection is a convenience rather than a primary feature, so
-			// we'll avoid adding more complexity to this part.
+			// a service implementation must have either a default constructor or a static
+			// provider() method. Constructor injection is only possible through the latter,
+			// using the factories generated at compile time (see newInstance(type,injection))
 			//
 			return Optional.of(type.getConstructor().newInstance());
+		} catch (InvocationTargetException e) {
+			LOGGER.error("Cannot instantiate class {} : {}", type.getCanonicalName(), e.getCause().toString());
+			LOGGER.debug("{}",e,e);
 		} catch (ReflectiveOperationException e) {
 			LOGGER.error("Cannot instantiate class {} : {}", type.getCanonicalName(), e.toString());
 			LOGGER.debug("{}",e,e);
@@ -205,63 +557,118 @@ public class DefaultExtensionManager implements ExtensionManager {
 
 
 	@SuppressWarnings("unchecked")
-	private  <T> Optional<T> singleton(Class<? extends T> type) {
-		T prototype = (T) singletons.computeIfAbsent(type, it->newInstance(it).orElse(null));
-		return Optional.ofNullable(prototype);
+	private  <T> Optional<T> singleton(Class<? extends T> type, InjectionHandler injection) {
+		if (listener != null) {
+			notifyCache(ExtensionManagerListener.Cache.GLOBAL_INSTANCE, type, singletons.contains(type));
+		}
+		return (Optional<T>) singletons.get(type, it -> newExtension(it, Scope.GLOBAL, injection));
 	}
 
 
 	@SuppressWarnings("unchecked")
-	private  <T> Optional<T> local(Class<? extends T> type) {
-		T prototype = (T) locals.computeIfAbsent(type, it->newInstance(it).orElse(null));
+	private  <T> Optional<T> local(Class<? extends T> type, InjectionHandler injection) {
+		if (listener != null) {
+			notifyCache(ExtensionManagerListener.Cache.LOCAL_INSTANCE, type, locals.containsKey(type));
+		}
+		T prototype = (T) locals.get(type);
+		if (prototype == null) {
+			// injected constructors may request other local extensions, so the
+			// instance is not created while computing the map entry
+			prototype = newExtension(type, Scope.LOCAL, injection).orElse(null);
+			if (prototype != null) {
+				var previous = (T) locals.putIfAbsent(type, prototype);
+				prototype = previous == null ? prototype : previous;
+			}
+		}
 		return Optional.ofNullable(prototype);
 	}
 
 
 	private <T> T runPostConstructMethods(T extension) {
-		var methods = Stream.of(extension.getClass().getMethods())
-			.filter(method -> method.isAnnotationPresent(PostConstruct.class))
-			.filter(method -> method.getParameterCount() == 0)
-			.toList();
+		if (listener != null) {
+			notifyCache(
+				ExtensionManagerListener.Cache.POST_CONSTRUCT,
+				extension.getClass(),
+				postConstructMethods.containsKey(extension.getClass())
+			);
+		}
+		var methods = postConstructMethods.computeIfAbsent(
+			extension.getClass(),
+			this::resolvePostConstructMethods
+		);
 		for (var method : methods) {
 			try {
-				method.invoke(extension);
-			} catch (IllegalAccessException e) {
+				method.handle().invokeExact((Object) extension);
+			} catch (Throwable e) {
 				LOGGER.error("Cannot execute post construct method {}::{}  : {}",
 					extension.getClass().getCanonicalName(),
-					method.getName(),
+					method.name(),
 					e.getMessage()
 				);
 				LOGGER.debug("{}",e,e);
-			} catch (InvocationTargetException e) {
-				LOGGER.error("Cannot execute post construct method {}::{}  : {}",
-					extension.getClass().getCanonicalName(),
-					method.getName(),
-					e.getTargetException().getMessage()
-				);
-				LOGGER.debug("{}",e.getTargetException(),e.getTargetException());
 			}
 		}
 		return extension;
 	}
 
 
-	@SuppressWarnings("unchecked")
-	private <T> boolean validateProvider(Provider<T> provider, Class<T> extensionPoint) {
-		Class<T> extension = (Class<T>) provider.type();
-		if (validExtensions.contains(extension)) {
-			return true;
+	/*
+	 * Most extensions have no post construct methods, so the empty list
+	 * acts as a marker that avoids inspecting the class again
+	 */
+	private List<PostConstructMethod> resolvePostConstructMethods(Class<?> type) {
+		List<PostConstructMethod> methods = new ArrayList<>();
+		for (var method : type.getMethods()) {
+			if (method.isAnnotationPresent(PostConstruct.class) && method.getParameterCount() == 0) {
+				try {
+					method.setAccessible(true);
+					var handle = MethodHandles.lookup().unreflect(method);
+					if (Modifier.isStatic(method.getModifiers())) {
+						handle = MethodHandles.dropArguments(handle, 0, Object.class);
+					}
+					handle = MethodHandles.dropReturn(handle).asType(POST_CONSTRUCT_TYPE);
+					methods.add(new PostConstructMethod(method.getName(), handle));
+				} catch (IllegalAccessException | RuntimeException e) {
+					LOGGER.error("Cannot execute post construct method {}::{}  : {}",
+						type.getCanonicalName(),
+						method.getName(),
+						e.getMessage()
+					);
+					LOGGER.debug("{}",e,e);
+				}
+			}
 		}
+		return methods.isEmpty() ? List.of() : List.copyOf(methods);
+	}
+
+
+	private <T> Optional<ExtensionMetadata> validateProvider(
+		Provider<T> provider,
+		Class<T> extensionPoint,
+		Version specificationVersion
+	) {
+		Class<?> extension = provider.type();
 		if (invalidExtensions.contains(extension)) {
-			return false;
+			return Optional.empty();
+		}
+		if (validExtensions.contains(extension)) {
+			return Optional.ofNullable(metadataOf(extension));
 		}
 		try {
-			validateAnnotatedWith(extension, Extension.class);
-			var extensionMetadata = extension.getAnnotation(Extension.class);
-			var extensionPointMetadata = extensionPoint.getAnnotation(ExtensionPoint.class);
-			validateExtensionMetadata(extensionMetadata,extensionPointMetadata);
+			var extensionMetadata = metadataOf(extension);
+			if (extensionMetadata == null) {
+				throw new IllegalArgumentException(String.format(
+					"Class %s not annotated with %s",
+					extension.getCanonicalName(),
+					Extension.class.getCanonicalName()
+				));
+			}
+			validateExtensionMetadata(extensionMetadata, specificationVersion);
 			validExtensions.add(extension);
-			return true;
+			if (listener != null) {
+				listener.providerValidated(extensionPoint, extension, true);
+			}
+			return Optional.of(extensionMetadata);
 		} catch (Exception e) {
 			LOGGER.warn(
 				"Extension {} implementing {} is not valid and it will be ignored",
@@ -271,17 +678,19 @@ public class DefaultExtensionManager implements ExtensionManager {
 			LOGGER.warn(e.getMessage());
 			LOGGER.debug("{}",e,e);
 			invalidExtensions.add(extension);
-			return false;
+			if (listener != null) {
+				listener.providerValidated(extensionPoint, extension, false);
+			}
+			return Optional.empty();
 		}
 	}
 
 
 	private void validateExtensionMetadata(
-		Extension extensionMetadata,
-		ExtensionPoint extensionPointMetadata
+		ExtensionMetadata extensionMetadata,
+		Version specificationVersion
 	) throws IllegalArgumentException {
 		var implementationVersion = Version.of(extensionMetadata.extensionPointVersion());
-		var specificationVersion = Version.of(extensionPointMetadata.version());
 		boolean compatible = specificationVersion.isCompatibleWith(implementationVersion);
 		if (!compatible) {
 			throw new IllegalArgumentException(String.format(
@@ -304,18 +713,8 @@ public class DefaultExtensionManager implements ExtensionManager {
 	}
 
 
-	private <T> int comparePriority (Provider<T> providerA, Provider<T> providerB) {
-		return extensionOf(providerA).priority().compareTo(extensionOf(providerB).priority());
-	}
-
-
-
-	private <T> Extension extensionOf(Provider<T> provider) {
-		return provider.type().getAnnotation(Extension.class);
-	}
-
-	private Extension extensionOf(Object extension) {
-		return extension.getClass().getAnnotation(Extension.class);
+	private <T> int comparePriority (ProviderIndex.Entry<T> entryA, ProviderIndex.Entry<T> entryB) {
+		return entryA.metadata().priority().compareTo(entryB.metadata().priority());
 	}
 
 
@@ -0,0 +1,127 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.internal;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import jexten.*;
+import org.slf4j.Logger;
+
+
+/**
+ * The extension index of a module, as written by the <tt>jexten-processor</tt>
+ * at build time in the resource {@value #RESOURCE}.
+ * <p>
+ * The index allows to know the metadata of every extension of the module
+ * without parsing the {@link Extension} annotation of each class. Notice that
+ * the extension classes are still loaded (though not initialized) by the service
+ * loader when discovering the providers; the index only avoids reading their
+ * annotations. Modules without an index (or with an index of an unsupported
+ * format version) are handled by reading the annotations as usual.
+ */
+final class ExtensionIndex {
+
+	/*
+	 * The format must be kept in sync with jexten.processor.JextenProcessor:
+	 *   # jexten-index <format version>
+	 *   <extension>\t<extension point>\t<priority>\t<scope>\t<name>\t<extension point version>\t<loaded with>
+	 * Backslashes, tabs and line breaks within the fields are escaped as \\, \t, \n and \r
+	 * The extension point is informative only, since the provider is already bound to it
+	 */
+	static final String RESOURCE = "META-INF/extensions.index";
+	static final String HEADER = "# jexten-index ";
+	static final int FORMAT_VERSION = 2;
+
+	static final ExtensionIndex EMPTY = new ExtensionIndex(Map.of());
+
+	private static final int FIELDS = 7;
+
+
+	static ExtensionIndex of(Module module, Logger logger) {
+		if (!module.isNamed()) {
+			return EMPTY;
+		}
+		try (var input = module.getResourceAsStream(RESOURCE)) {
+			if (input == null) {
+				return EMPTY;
+			}
+			return read(input, module, logger);
+		} catch (IOException | RuntimeException e) {
+			logger.warn("Cannot read extension index of module {} : {}", module.getName(), e.toString());
+			logger.debug("{}", e, e);
+			return EMPTY;
+		}
+	}
+
+
+	private static ExtensionIndex read(InputStream input, Module module, Logger logger) throws IOException {
+		var reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+		String header = reader.readLine();
+		if (header == null || !header.equals(HEADER + FORMAT_VERSION)) {
+			logger.debug("Ignoring extension index of module {} with unsupported header '{}'", module.getName(), header);
+			return EMPTY;
+		}
+		Map<String,ExtensionMetadata> entries = new HashMap<>();
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (line.isBlank()) {
+				continue;
+			}
+			String[] fields = line.split("\t", -1);
+			if (fields.length != FIELDS) {
+				throw new IOException("Malformed extension index line: " + line);
+			}
+			for (int i = 0; i < fields.length; i++) {
+				fields[i] = unescape(fields[i], line);
+			}
+			entries.put(fields[0], new ExtensionMetadata(
+				Priority.valueOf(fields[2]),
+				Scope.valueOf(fields[3]),
+				fields[4],
+				fields[5],
+				fields[6]
+			));
+		}
+		return new ExtensionIndex(Map.copyOf(entries));
+	}
+
+
+	private static String unescape(String field, String line) throws IOException {
+		if (field.indexOf('\\') < 0) {
+			return field;
+		}
+		var value = new StringBuilder(field.length());
+		for (int i = 0; i < field.length(); i++) {
+			char c = field.charAt(i);
+			if (c != '\\') {
+				value.append(c);
+				continue;
+			}
+			char escaped = ++i < field.length() ? field.charAt(i) : 0;
+			switch (escaped) {
+				case '\\' -> value.append('\\');
+				case 't' -> value.append('\t');
+				case 'n' -> value.append('\n');
+				case 'r' -> value.append('\r');
+				default -> throw new IOException("Malformed extension index line: " + line);
+			}
+		}
+		return value.toString();
+	}
+
+
+	private final Map<String,ExtensionMetadata> entries;
+
+
+	private ExtensionIndex(Map<String, ExtensionMetadata> entries) {
+		this.entries = entries;
+	}
+
+
+	Optional<ExtensionMetadata> get(String extensionClassName) {
+		return Optional.ofNullable(entries.get(extensionClassName));
+	}
+
+}
@@ -0,0 +1,41 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.internal;
+
+import jexten.*;
+
+
+/**
+ * The values of the {@link Extension} annotation of an extension class, either
+ * read from the build-time extension index or from the annotation itself.
+ */
+record ExtensionMetadata(
+	Priority priority,
+	Scope scope,
+	String name,
+	String extensionPointVersion,
+	String loadedWith
+) {
+
+	private static final String DEFAULT_LOADER = ExtensionLoader.class.getName();
+
+
+	static ExtensionMetadata of(Extension annotation) {
+		return new ExtensionMetadata(
+			annotation.priority(),
+			annotation.scope(),
+			annotation.name(),
+			annotation.extensionPointVersion(),
+			annotation.loadedWith().getName()
+		);
+	}
+
+
+	/**
+	 * @return whether the extension must be loaded with a custom {@link ExtensionLoader}
+	 */
+	boolean hasCustomLoader() {
+		return !DEFAULT_LOADER.equals(loadedWith);
+	}
+
+}
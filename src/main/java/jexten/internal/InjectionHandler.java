@@ -2,11 +2,10 @@
 
 package jexten.internal;
 
-import java.lang.reflect.*;
+import java.lang.reflect.Array;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Pattern;
-import java.util.stream.Stream;
+import java.util.function.Supplier;
 
 import jexten.*;
 import org.slf4j.Logger;
@@ -14,15 +13,8 @@ import org.slf4j.Logger;
 public class InjectionHandler {
 
 
-    private static final Pattern GENERIC_NAME = Pattern.compile("[^<]+<([^>]+)>");
-
-    private static final Set<Class<?>> COLLECTION_TYPES = Set.of(
-        List.class,
-        Set.class,
-        Collection.class
-    );
-
-    private static final Object[] EMPTY_ARRAY = new Object[0];
+    // the handler used by the extension loader invoked in each thread, if any
+    private static final ThreadLocal<InjectionHandler> currentHandler = new ThreadLocal<>();
 
 
     public record InjectionRequest (
@@ -40,6 +32,8 @@ public class InjectionHandler {
     private final DefaultExtensionManager extensionManager;
     private final Map<Class<?>, Map<Class<?>,Object>> resolvedInstances = new HashMap<>();
     private final InjectionProvider externalInjectionProvider;
+    // factories whose constructor is being invoked, in order to detect loops
+    private final Set<Class<?>> constructingFactories = new HashSet<>();
 
     public InjectionHandler(
         DefaultExtensionManager extensionManager,
@@ -52,13 +46,73 @@ public class InjectionHandler {
     }
 
 
+    /**
+     * Create a new extension using the given factory, resolving the constructor
+     * arguments with the handler bound to the current thread
+     * @throws IllegalStateException if the extension is not being instantiated
+     *                               by an extension manager
+     */
+    static <T> T provide(ExtensionFactory<T> factory) {
+        var handler = currentHandler.get();
+        if (handler == null) {
+            throw new IllegalStateException(
+                "Extensions with injected constructors can only be provided by an extension manager"
+            );
+        }
+        return handler.newInstance(factory);
+    }
+
+
+    /**
+     * Perform the given action with this handler bound to the current thread, so
+     * it is used by any generated factory invoked meanwhile
+     */
+    <T> T bindTo(Supplier<T> action) {
+        var previous = currentHandler.get();
+        currentHandler.set(this);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                currentHandler.remove();
+            } else {
+                currentHandler.set(previous);
+            }
+        }
+    }
+
+
+    /*
+     * Unlike field injection, constructor injection cannot solve dependency loops
+     * since the dependent extension does not exist yet
+     */
+    <T> T newInstance(ExtensionFactory<T> factory) {
+        if (!constructingFactories.add(factory.getClass())) {
+            throw new IllegalStateException(
+                "Circular dependency detected creating extension with "+factory.getClass().getCanonicalName()
+            );
+        }
+        try {
+            var parameters = factory.injectedParameters();
+            Object[] arguments = new Object[parameters.size()];
+            for (int i = 0; i < arguments.length; i++) {
+                var parameter = parameters.get(i);
+                arguments[i] = retrieveInjectableInstances(
+                    InjectionPlan.request(parameter.type(), parameter.elementType(), parameter.name())
+                );
+            }
+            return factory.newInstance(arguments);
+        } finally {
+            constructingFactories.remove(factory.getClass());
+        }
+    }
+
+
     public <T,E> E injectExtensions(Class<T> extensionPoint, E extension) {
         addExtensionIfAbsent(extensionPoint, extension);
-        Class<?> extensionClass = extension.getClass();
-        Stream.<Class<?>>iterate(extensionClass, Objects::nonNull, Class::getSuperclass)
-            .flatMap(this::getAllFields)
-            .filter(field -> field.isAnnotationPresent(Inject.class))
-            .forEach(field -> tryInjectExtensions(extension, field));
+        for (var point : extensionManager.injectionPlanOf(extension.getClass()).points()) {
+            tryInjectExtensions(extension, point);
+        }
         return extension;
     }
 
@@ -123,87 +177,24 @@ public class InjectionHandler {
 
     private boolean extensionMatchName(Object extension, String name) {
         if (name.isEmpty()) return true;
-        var annotation = extension.getClass().getAnnotation(Extension.class);
-        return name.equals(annotation.name());
+        var metadata = extensionManager.metadataOf(extension.getClass());
+        return metadata != null && name.equals(metadata.name());
     }
 
 
-    private <E> void tryInjectExtensions(E extension, Field field) {
+    private <E> void tryInjectExtensions(E extension, InjectionPlan.InjectionPoint point) {
         try {
-            injectExtensionsInField(extension, field);
+            point.inject(extension, retrieveInjectableInstances(point.request()));
         } catch (Exception e) {
             logger.warn(
                 "Cannot inject value into {}.{} : {}",
                 extension.getClass().getCanonicalName(),
-                field.getName(),
+                point.fieldName(),
                 e.getMessage()
             );
             logger.debug("{}", e, e);
-            if (e instanceof InaccessibleObjectException) {
-                logger.warn(
-                    "Consider add the following to your module-info.java file:\n\topens {} to {};\n",
-                    extension.getClass().getPackage().getName(),
-                    ExtensionManager.class.getModule().getName()
-                );
-            }
-        }
-    }
-
-
-    private <E> void injectExtensionsInField(E extension, Field field)
-    throws IllegalAccessException, ClassNotFoundException {
-        var injectionRequest = requestFromField(field);
-        Object value = retrieveInjectableInstances(injectionRequest);
-        if (!field.canAccess(extension)) {
-            field.setAccessible(true);
-        }
-        field.set(extension, value);
-    }
-
-
-
-    private static InjectionRequest requestFromField(Field field) throws ClassNotFoundException {
-        var effectiveType = effectiveType(field.getType(), field.getGenericType());
-        var annotation = field.getAnnotation(Inject.class);
-        return new InjectionRequest(
-            field.getType(),
-            effectiveType,
-            annotation == null ? effectiveType.getCanonicalName() : annotation.value(),
-            !field.getType().isArray() && effectiveType != field.getType(),
-            field.getType().isArray(),
-            COLLECTION_TYPES.contains(field.getType()),
-            effectiveType.isAnnotationPresent(ExtensionPoint.class)
-        );
-    }
-
-
-    private Stream<Field> getAllFields(Class<?> type) {
-        if (type == null) {
-            return Stream.empty();
-        }
-        return Stream.concat(Stream.of(type.getDeclaredFields()),getAllFields(type.getSuperclass()));
-    }
-
-
-    private static Class<?> effectiveType(Class<?> type, Type genericType) throws ClassNotFoundException {
-        if (type.isArray()) {
-            return type.componentType();
         }
-        if (type == List.class || type == Set.class || type == Collection.class) {
-            var genericTypeMatcher = GENERIC_NAME.matcher(genericType.getTypeName());
-            if (genericTypeMatcher.matches()) {
-                return Class.forName(genericTypeMatcher.group(1));
-            } else {
-                throw new ClassNotFoundException("Raw use of parametrized type "+type.getSimpleName());
-            }
-        }
-        return type;
     }
 
 
-
-    private static IllegalArgumentException nothingToInjectException(Class<?> type) {
-        return new IllegalArgumentException("There is no extension implementing "+type);
-    }
-
 }
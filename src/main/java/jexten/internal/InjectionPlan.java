@@ -0,0 +1,219 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.internal;
+
+import java.lang.invoke.*;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+import jexten.*;
+import jexten.internal.InjectionHandler.InjectionRequest;
+import org.slf4j.Logger;
+
+
+/**
+ * The immutable description of how to inject values into the instances of an
+ * extension class.
+ * <p>
+ * Every injectable field of the class hierarchy is inspected only once, when
+ * the plan is created; after that, injecting values into a new instance is a
+ * simple iteration over the precomputed injection points. If the class has
+ * an {@link ExtensionInjector} generated at compile time, it is used instead
+ * of reflection. Injected constructors are handled by the {@link ExtensionFactory}
+ * generated for the class, instead.
+ */
+record InjectionPlan(List<InjectionPoint> points) {
+
+	static final InjectionPlan EMPTY = new InjectionPlan(List.of());
+
+	private static final Set<Class<?>> COLLECTION_TYPES = Set.of(
+		List.class,
+		Set.class,
+		Collection.class
+	);
+
+	private static final MethodType SETTER_TYPE = MethodType.methodType(
+		void.class,
+		Object.class,
+		Object.class
+	);
+
+
+	/**
+	 * A field that has to be injected, along with the setter used to assign it
+	 */
+	record InjectionPoint(
+		InjectionRequest request,
+		String fieldName,
+		BiConsumer<Object,Object> setter
+	) {
+
+		void inject(Object instance, Object value) {
+			setter.accept(instance, value);
+		}
+
+	}
+
+
+	InjectionPlan {
+		points = List.copyOf(points);
+	}
+
+
+	static InjectionPlan of(Class<?> type, Logger logger) {
+		var injector = generatedInjector(type, logger);
+		if (injector.isPresent()) {
+			return generatedInjectionPlan(injector.get());
+		}
+		List<InjectionPoint> points = new ArrayList<>();
+		for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+			for (Field field : current.getDeclaredFields()) {
+				if (field.isAnnotationPresent(Inject.class)) {
+					injectionPointOf(type, field, logger).ifPresent(points::add);
+				}
+			}
+		}
+		return points.isEmpty() ? EMPTY : new InjectionPlan(points);
+	}
+
+
+	boolean isEmpty() {
+		return points.isEmpty();
+	}
+
+
+	@SuppressWarnings("unchecked")
+	private static Optional<ExtensionInjector<Object>> generatedInjector(Class<?> type, Logger logger) {
+		return generated(type, ExtensionInjector.SUFFIX, logger).map(it -> (ExtensionInjector<Object>) it);
+	}
+
+
+	/**
+	 * @return The factory generated at compile time for the given extension class,
+	 *         if it has an injected constructor
+	 */
+	@SuppressWarnings("unchecked")
+	static Optional<ExtensionFactory<Object>> generatedFactory(Class<?> type, Logger logger) {
+		return generated(type, ExtensionFactory.SUFFIX, logger).map(it -> (ExtensionFactory<Object>) it);
+	}
+
+
+	private static Optional<Object> generated(Class<?> type, String suffix, Logger logger) {
+		Class<?> generatedType;
+		try {
+			generatedType = Class.forName(type.getName() + suffix, false, type.getClassLoader());
+		} catch (ClassNotFoundException e) {
+			return Optional.empty();
+		}
+		try {
+			var generated = generatedType.getConstructor().newInstance();
+			logger.debug("Using generated {}", generatedType.getName());
+			return Optional.of(generated);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			logger.warn("Cannot use generated {} : {}", generatedType.getName(), e.toString());
+			logger.debug("{}", e, e);
+			return Optional.empty();
+		}
+	}
+
+
+	private static InjectionPlan generatedInjectionPlan(ExtensionInjector<Object> injector) {
+		var fields = injector.injectedFields();
+		List<InjectionPoint> points = new ArrayList<>(fields.size());
+		for (int i = 0; i < fields.size(); i++) {
+			int index = i;
+			var field = fields.get(i);
+			points.add(new InjectionPoint(
+				request(field.type(), field.elementType(), field.name()),
+				field.field(),
+				(instance, value) -> injector.inject(instance, index, value)
+			));
+		}
+		return points.isEmpty() ? EMPTY : new InjectionPlan(points);
+	}
+
+
+	private static Optional<InjectionPoint> injectionPointOf(Class<?> type, Field field, Logger logger) {
+		try {
+			return Optional.of(new InjectionPoint(requestFromField(field), field.getName(), setterOf(field)));
+		} catch (Exception e) {
+			logger.warn(
+				"Cannot inject value into {}.{} : {}",
+				type.getCanonicalName(),
+				field.getName(),
+				e.getMessage()
+			);
+			logger.debug("{}", e, e);
+			if (e instanceof InaccessibleObjectException) {
+				logger.warn(
+					"Consider add the following to your module-info.java file:\n\topens {} to {};\n",
+					field.getDeclaringClass().getPackage().getName(),
+					ExtensionManager.class.getModule().getName()
+				);
+			}
+			return Optional.empty();
+		}
+	}
+
+
+	private static BiConsumer<Object,Object> setterOf(Field field) throws IllegalAccessException {
+		field.setAccessible(true);
+		MethodHandle handle = MethodHandles.lookup().unreflectSetter(field);
+		if (Modifier.isStatic(field.getModifiers())) {
+			handle = MethodHandles.dropArguments(handle, 0, Object.class);
+		}
+		MethodHandle setter = handle.asType(SETTER_TYPE);
+		return (instance, value) -> {
+			try {
+				setter.invokeExact(instance, value);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException(e);
+			}
+		};
+	}
+
+
+	private static InjectionRequest requestFromField(Field field) throws ClassNotFoundException {
+		var effectiveType = effectiveType(field.getType(), field.getGenericType());
+		var annotation = field.getAnnotation(Inject.class);
+		return request(
+			field.getType(),
+			effectiveType,
+			annotation == null ? effectiveType.getCanonicalName() : annotation.value()
+		);
+	}
+
+
+	static InjectionRequest request(Class<?> type, Class<?> effectiveType, String name) {
+		return new InjectionRequest(
+			type,
+			effectiveType,
+			name,
+			!type.isArray() && effectiveType != type,
+			type.isArray(),
+			COLLECTION_TYPES.contains(type),
+			effectiveType.isAnnotationPresent(ExtensionPoint.class)
+		);
+	}
+
+
+	private static Class<?> effectiveType(Class<?> type, Type genericType) throws ClassNotFoundException {
+		if (type.isArray()) {
+			return type.componentType();
+		}
+		if (COLLECTION_TYPES.contains(type)) {
+			if (genericType instanceof ParameterizedType parameterizedType &&
+				parameterizedType.getActualTypeArguments()[0] instanceof Class<?> argument
+			) {
+				return argument;
+			} else {
+				throw new ClassNotFoundException("Raw use of parametrized type "+type.getSimpleName());
+			}
+		}
+		return type;
+	}
+
+}
@@ -0,0 +1,177 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.internal;
+
+import java.lang.module.ModuleDescriptor;
+import java.util.*;
+import java.util.ServiceLoader.Provider;
+
+import jexten.ExtensionFactory;
+import org.slf4j.Logger;
+
+
+/**
+ * Discovery of the providers of a service within a set of module layers and
+ * their ancestors, based on the <tt>provides</tt> directives of the module
+ * descriptors.
+ * <p>
+ * Unlike {@link ServiceLoader#load(ModuleLayer, Class)}, which walks every
+ * ancestor layer each time it is invoked, each distinct layer is visited only
+ * once regardless of how many of the given layers share it. Layers are visited
+ * in the same order than the service loader would do (each layer followed by
+ * its parents, depth-first), so the providers of a layer are discovered before
+ * the ones of its ancestors. Within a layer, the order of the service loader
+ * depends on the internal hashing of the module names, so the modules are
+ * visited by name instead in order to keep the discovery order deterministic.
+ */
+final class LayerProviders {
+
+
+	/*
+	 * The provider class is loaded when discovered, but it is only instantiated
+	 * on demand, delegating to the actual service loader provider so the same
+	 * access rules apply. Extensions with a generated factory are instantiated
+	 * by the factory instead, since their provider() method cannot resolve the
+	 * constructor arguments.
+	 */
+	private static final class LayerProvider<T> implements Provider<T> {
+
+		private final Class<T> service;
+		private final Class<? extends T> type;
+		private final Logger logger;
+		private volatile Optional<ExtensionFactory<Object>> factory;
+		private volatile Provider<T> delegate;
+
+		private LayerProvider(Class<T> service, Class<? extends T> type, Logger logger) {
+			this.service = service;
+			this.type = type;
+			this.logger = logger;
+		}
+
+		@Override
+		public Class<? extends T> type() {
+			return type;
+		}
+
+		@Override
+		public T get() {
+			var generatedFactory = factory;
+			if (generatedFactory == null) {
+				generatedFactory = InjectionPlan.generatedFactory(type, logger);
+				factory = generatedFactory;
+			}
+			if (generatedFactory.isPresent()) {
+				return service.cast(InjectionHandler.provide(generatedFactory.get()));
+			}
+			var provider = delegate;
+			if (provider == null) {
+				provider = ServiceLoader.load(type.getModule().getLayer(), service).stream()
+					.filter(it -> it.type() == type)
+					.findFirst()
+					.orElseThrow(() -> new ServiceConfigurationError(
+						service.getName() + ": provider " + type.getName() + " not found"
+					));
+				delegate = provider;
+			}
+			return provider.get();
+		}
+
+	}
+
+
+	private LayerProviders() {
+		// not instantiable
+	}
+
+
+	/**
+	 * @return The distinct providers of the given service present in the given
+	 *         layers or any of their ancestors, in order of discovery
+	 */
+	static <T> List<Provider<T>> of(Class<T> service, List<ModuleLayer> layers, Logger logger) {
+		// each module belongs to a single layer, so no provider is found twice
+		List<Provider<T>> providers = new ArrayList<>();
+		for (ModuleLayer layer : distinctLayers(layers)) {
+			for (Module module : sortedModules(layer)) {
+				for (String providerName : providerNames(module.getDescriptor(), service)) {
+					loadProvider(service, module, providerName, logger).ifPresent(providers::add);
+				}
+			}
+		}
+		return providers;
+	}
+
+
+	/*
+	 * Each layer followed by its parents, depth-first, as the service loader does
+	 */
+	private static List<ModuleLayer> distinctLayers(List<ModuleLayer> layers) {
+		Set<ModuleLayer> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		List<ModuleLayer> distinctLayers = new ArrayList<>();
+		for (ModuleLayer root : layers) {
+			if (!visited.add(root)) {
+				continue;
+			}
+			Deque<ModuleLayer> stack = new ArrayDeque<>();
+			stack.push(root);
+			while (!stack.isEmpty()) {
+				ModuleLayer layer = stack.pop();
+				distinctLayers.add(layer);
+				List<ModuleLayer> parents = layer.parents();
+				for (int i = parents.size() - 1; i >= 0; i--) {
+					if (visited.add(parents.get(i))) {
+						stack.push(parents.get(i));
+					}
+				}
+			}
+		}
+		return distinctLayers;
+	}
+
+
+	private static List<Module> sortedModules(ModuleLayer layer) {
+		return layer.modules().stream()
+			.sorted(Comparator.comparing(Module::getName))
+			.toList();
+	}
+
+
+	private static List<String> providerNames(ModuleDescriptor descriptor, Class<?> service) {
+		for (var provides : descriptor.provides()) {
+			if (provides.service().equals(service.getName())) {
+				return provides.providers();
+			}
+		}
+		return List.of();
+	}
+
+
+	/*
+	 * The service loader would fail when reaching a provider that is not a subtype
+	 * of the service, so it is skipped instead
+	 */
+	private static <T> Optional<Provider<T>> loadProvider(
+		Class<T> service,
+		Module module,
+		String providerName,
+		Logger logger
+	) {
+		try {
+			Class<?> type = Class.forName(module, providerName);
+			if (type == null) {
+				logger.error("Cannot find provider {} of {} in module {}", providerName, service.getName(), module.getName());
+				return Optional.empty();
+			}
+			if (!service.isAssignableFrom(type)) {
+				logger.error("Provider {} of {} in module {} is not a subtype of it", providerName, service.getName(), module.getName());
+				return Optional.empty();
+			}
+			return Optional.of(new LayerProvider<>(service, type.asSubclass(service), logger));
+		} catch (LinkageError e) {
+			logger.error("Cannot load provider {} of {} : {}", providerName, service.getName(), e.toString());
+			logger.debug("{}", e, e);
+			return Optional.empty();
+		}
+	}
+
+}
@@ -0,0 +1,272 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.internal;
+
+import java.io.IOException;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.*;
+
+
+/**
+ * Read-only view of a zip archive backed by a memory-mapped buffer.
+ * <p>
+ * The entries are located by parsing the central directory of the archive, so no
+ * content is read until requested. Entries stored without compression are served
+ * as slices of the mapped buffer, which also allows to open a zip archive nested
+ * within another one (as long as the nested archive is stored) without copying it.
+ * <p>
+ * Only the features used by plugin files are supported: ZIP64 archives and
+ * encrypted entries are rejected. Offsets and lengths out of the bounds of the
+ * archive are reported as a {@link ZipException}. Entry names are decoded as UTF-8, as
+ * {@link java.util.jar.JarFile} does, and names that are not valid UTF-8 are rejected.
+ * <p>
+ * Mappings are not shared: the mapped buffer is released once the instance (and any
+ * buffer returned by it) is no longer referenced.
+ */
+public final class MappedZip {
+
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+	private static final int CENTRAL_SIGNATURE = 0x02014b50;
+	private static final int LOCAL_SIGNATURE = 0x04034b50;
+	private static final int END_SIZE = 22;
+	private static final int CENTRAL_HEADER_SIZE = 46;
+	private static final int LOCAL_HEADER_SIZE = 30;
+	private static final int ZIP64_LOCATOR_SIZE = 20;
+	private static final int MAX_COMMENT_SIZE = 0xFFFF;
+	private static final long ZIP64_MARK = 0xFFFFFFFFL;
+	private static final int ENCRYPTED_FLAG = 0x1;
+	private static final int UTF8_FLAG = 0x800;
+
+
+	/**
+	 * An entry of the archive
+	 */
+	public record Entry(String name, int method, int compressedSize, int size, int localHeaderOffset) {
+
+		public boolean isDirectory() {
+			return name.endsWith("/");
+		}
+
+		public boolean isStored() {
+			return method == ZipEntry.STORED;
+		}
+	}
+
+
+	/**
+	 * Open a new mapped view of the given zip file
+	 * @throws ZipException if the file is not a zip archive or uses unsupported features
+	 */
+	public static MappedZip open(Path path) throws IOException {
+		Path file = path.toAbsolutePath().normalize();
+		return new MappedZip(file.toUri().toString(), map(file));
+	}
+
+
+	private static ByteBuffer map(Path file) throws IOException {
+		try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new ZipException("Zip file too large to be mapped: " + file);
+			}
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+
+
+	private final String location;
+	private final ByteBuffer buffer;
+	private final Map<String, Entry> entries;
+
+
+	private MappedZip(String location, ByteBuffer buffer) throws ZipException {
+		this.location = location;
+		this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		this.entries = readCentralDirectory();
+	}
+
+
+	/**
+	 * @return The location of the archive, either the URI of the file or the location
+	 *         of the enclosing archive followed by <tt>!/</tt> and the entry name
+	 */
+	public String location() {
+		return location;
+	}
+
+
+	public Optional<Entry> entry(String name) {
+		return Optional.ofNullable(entries.get(name));
+	}
+
+
+	public Stream<Entry> entries() {
+		return entries.values().stream();
+	}
+
+
+	/**
+	 * @return The content of the given entry. Stored entries are returned as a read-only
+	 *         view of the mapped archive; compressed entries are inflated into a new buffer.
+	 */
+	public ByteBuffer read(Entry entry) throws IOException {
+		ByteBuffer data = data(entry);
+		if (entry.isStored()) {
+			return data;
+		}
+		if (entry.method() != ZipEntry.DEFLATED) {
+			throw new ZipException("Unsupported compression method for entry " + entry.name());
+		}
+		var inflater = new Inflater(true);
+		try {
+			inflater.setInput(data);
+			byte[] output = new byte[entry.size()];
+			int length = 0;
+			while (length < output.length && !inflater.finished()) {
+				int inflated = inflater.inflate(output, length, output.length - length);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new ZipException("Truncated entry " + entry.name());
+				}
+				length += inflated;
+			}
+			return ByteBuffer.wrap(output, 0, length);
+		} catch (DataFormatException e) {
+			throw new ZipException("Invalid compressed data for entry " + entry.name() + ": " + e.getMessage());
+		} finally {
+			inflater.end();
+		}
+	}
+
+
+	/**
+	 * @return A view of the given stored entry as a zip archive itself
+	 */
+	public MappedZip nested(Entry entry) throws IOException {
+		if (!entry.isStored()) {
+			throw new ZipException("Entry " + entry.name() + " must be stored without compression");
+		}
+		return new MappedZip(location + "!/" + entry.name(), data(entry));
+	}
+
+
+	private ByteBuffer data(Entry entry) throws ZipException {
+		int offset = entry.localHeaderOffset();
+		checkBounds(offset, LOCAL_HEADER_SIZE, "Invalid local header for entry " + entry.name());
+		if (buffer.getInt(offset) != LOCAL_SIGNATURE) {
+			throw new ZipException("Invalid local header for entry " + entry.name());
+		}
+		int dataOffset = offset + LOCAL_HEADER_SIZE
+			+ Short.toUnsignedInt(buffer.getShort(offset + 26))
+			+ Short.toUnsignedInt(buffer.getShort(offset + 28));
+		checkBounds(dataOffset, entry.compressedSize(), "Invalid data for entry " + entry.name());
+		return buffer.slice(dataOffset, entry.compressedSize()).asReadOnlyBuffer();
+	}
+
+
+	private Map<String, Entry> readCentralDirectory() throws ZipException {
+		int end = locateEnd();
+		int count = Short.toUnsignedInt(buffer.getShort(end + 10));
+		long offset = Integer.toUnsignedLong(buffer.getInt(end + 16));
+		if (count == 0xFFFF || offset == ZIP64_MARK) {
+			throw new ZipException("ZIP64 archives are not supported: " + location);
+		}
+		Map<String, Entry> result = new LinkedHashMap<>();
+		checkBounds(offset, 0, "Invalid central directory: " + location);
+		int position = (int) offset;
+		for (int i = 0; i < count; i++) {
+			checkBounds(position, CENTRAL_HEADER_SIZE, "Invalid central directory: " + location);
+			if (buffer.getInt(position) != CENTRAL_SIGNATURE) {
+				throw new ZipException("Invalid central directory: " + location);
+			}
+			int flags = Short.toUnsignedInt(buffer.getShort(position + 8));
+			int method = Short.toUnsignedInt(buffer.getShort(position + 10));
+			long compressedSize = Integer.toUnsignedLong(buffer.getInt(position + 20));
+			long size = Integer.toUnsignedLong(buffer.getInt(position + 24));
+			int nameLength = Short.toUnsignedInt(buffer.getShort(position + 28));
+			int extraLength = Short.toUnsignedInt(buffer.getShort(position + 30));
+			int commentLength = Short.toUnsignedInt(buffer.getShort(position + 32));
+			long localHeaderOffset = Integer.toUnsignedLong(buffer.getInt(position + 42));
+			if (compressedSize == ZIP64_MARK || size == ZIP64_MARK || localHeaderOffset == ZIP64_MARK) {
+				throw new ZipException("ZIP64 archives are not supported: " + location);
+			}
+			if ((flags & ENCRYPTED_FLAG) != 0) {
+				throw new ZipException("Encrypted entries are not supported: " + location);
+			}
+			if (
+				compressedSize > Integer.MAX_VALUE ||
+				size > Integer.MAX_VALUE ||
+				localHeaderOffset > Integer.MAX_VALUE
+			) {
+				throw new ZipException("Invalid central directory: " + location);
+			}
+			checkBounds(position + CENTRAL_HEADER_SIZE, nameLength, "Invalid central directory: " + location);
+			byte[] name = new byte[nameLength];
+			buffer.get(position + CENTRAL_HEADER_SIZE, name);
+			var entry = new Entry(
+				decodeName(name, flags),
+				method,
+				(int) compressedSize,
+				(int) size,
+				(int) localHeaderOffset
+			);
+			result.put(entry.name(), entry);
+			position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+
+	/*
+	 * Malformed offsets or lengths are reported as an invalid archive instead of
+	 * letting the buffer fail with an index out of bounds
+	 */
+	private void checkBounds(long offset, long length, String message) throws ZipException {
+		if (offset < 0 || length < 0 || offset + length > buffer.limit()) {
+			throw new ZipException(message);
+		}
+	}
+
+
+	/*
+	 * Names flagged as UTF-8 must be so; unflagged names are decoded as UTF-8 as well
+	 * (instead of the legacy IBM437 charset), since that is how jar files are read
+	 */
+	private String decodeName(byte[] name, int flags) throws ZipException {
+		try {
+			return StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(name)).toString();
+		} catch (CharacterCodingException e) {
+			throw new ZipException(String.format(
+				"Invalid %s entry name in %s",
+				(flags & UTF8_FLAG) != 0 ? "UTF-8" : "non UTF-8",
+				location
+			));
+		}
+	}
+
+
+	private int locateEnd() throws ZipException {
+		int last = buffer.limit() - END_SIZE;
+		if (last < 0) {
+			throw new ZipException("Not a zip archive: " + location);
+		}
+		int first = Math.max(0, last - MAX_COMMENT_SIZE);
+		for (int position = last; position >= first; position--) {
+			if (buffer.getInt(position) == END_SIGNATURE) {
+				// the regular end record may have valid values even if the archive is ZIP64
+				int locator = position - ZIP64_LOCATOR_SIZE;
+				if (locator >= 0 && buffer.getInt(locator) == ZIP64_LOCATOR_SIGNATURE) {
+					throw new ZipException("ZIP64 archives are not supported: " + location);
+				}
+				return position;
+			}
+		}
+		throw new ZipException("Not a zip archive: " + location);
+	}
+
+}
@@ -0,0 +1,473 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.internal;
+
+import java.io.*;
+import java.lang.module.*;
+import java.lang.ref.WeakReference;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.jar.*;
+import java.util.regex.Pattern;
+import java.util.stream.*;
+
+
+/**
+ * Module finder that locates the modules of the jar files nested in a zip
+ * archive, reading them in place from a {@link MappedZip} instead of extracting
+ * them to disk.
+ * <p>
+ * The nested jar files must be stored without compression. Both explicit and
+ * automatic modules are supported, following the same rules as
+ * {@link ModuleFinder#of(Path...)}, including multi-release jar files.
+ * <p>
+ * The resources of the modules are located using URIs with the scheme
+ * {@value #SCHEME}, handled by {@link NestedJarURLStreamHandlerProvider}.
+ */
+public final class NestedJarModuleFinder implements ModuleFinder {
+
+	public static final String SCHEME = "jexten-nested";
+
+	private static final String SEPARATOR = "!/";
+	private static final String MODULE_INFO = "module-info.class";
+	private static final String SERVICES = "META-INF/services/";
+	private static final String VERSIONS = "META-INF/versions/";
+	private static final Pattern DASH_VERSION = Pattern.compile("-(\\d+(\\.|$))");
+	private static final Pattern NON_ALPHANUM = Pattern.compile("[^A-Za-z0-9]");
+	private static final Pattern REPEATING_DOTS = Pattern.compile("(\\.)(\\1)+");
+	private static final Pattern LEADING_DOTS = Pattern.compile("^\\.");
+	private static final Pattern TRAILING_DOTS = Pattern.compile("\\.$");
+
+	// the nested jars of the open module readers, keyed by location; the readers are
+	// kept by the class loader of the module, so the entries live as long as the plugin
+	private static final Map<String, WeakReference<MappedZip>> openJars = new ConcurrentHashMap<>();
+
+
+	/**
+	 * @return <code>true</code> if every jar file within the given zip file
+	 *         is stored without compression, so it can be read in place
+	 */
+	public static boolean supports(MappedZip zip) {
+		try {
+			var jars = zip.entries().filter(NestedJarModuleFinder::isJar).toList();
+			return !jars.isEmpty() && jars.stream().allMatch(MappedZip.Entry::isStored);
+		} catch (RuntimeException e) {
+			return false;
+		}
+	}
+
+
+	/**
+	 * Create a module finder for every jar file within the given zip file
+	 * @throws FindException if any jar file is not valid
+	 */
+	public static NestedJarModuleFinder of(Path zipFile) throws IOException {
+		return of(zipFile, MappedZip.open(zipFile));
+	}
+
+
+	/**
+	 * Create a module finder for every jar file within the given zip file, using
+	 * an already mapped view of it. The mapping is kept by the finder until it is
+	 * released.
+	 * @throws FindException if any jar file is not valid
+	 * @see #release()
+	 */
+	public static NestedJarModuleFinder of(Path zipFile, MappedZip zip) throws IOException {
+		Set<String> moduleNames = new HashSet<>();
+		Map<String, ModuleDescriptor> descriptors = new LinkedHashMap<>();
+		for (var entry : zip.entries().filter(NestedJarModuleFinder::isJar).toList()) {
+			ModuleDescriptor descriptor;
+			try {
+				descriptor = descriptor(zip.nested(entry), fileName(entry.name()));
+			} catch (IllegalArgumentException | InvalidModuleDescriptorException e) {
+				throw new FindException("Unable to derive module descriptor for " + entry.name(), e);
+			}
+			if (moduleNames.add(descriptor.name())) {
+				descriptors.put(entry.name(), descriptor);
+			}
+		}
+		return new NestedJarModuleFinder(zipFile, zip, descriptors);
+	}
+
+
+	/**
+	 * Create a module finder for the given jar files within the given zip file,
+	 * using descriptors already known (as returned by {@link #descriptors()})
+	 * instead of reading them again. The zip file is not mapped until the
+	 * modules are actually read.
+	 */
+	public static NestedJarModuleFinder of(Path zipFile, Map<String, ModuleDescriptor> descriptors) {
+		return new NestedJarModuleFinder(zipFile, null, descriptors);
+	}
+
+
+	/**
+	 * Open the resource located by the given URI, as returned by the module readers
+	 * of any finder. The resource is read from the jar of the module reader still
+	 * open for that location, if any; otherwise, the zip file is mapped again.
+	 */
+	static InputStream open(URI uri) throws IOException {
+		String path = uri.getSchemeSpecificPart();
+		int jarSeparator = path.indexOf(SEPARATOR);
+		int resourceSeparator = path.indexOf(SEPARATOR, jarSeparator + SEPARATOR.length());
+		if (!SCHEME.equals(uri.getScheme()) || jarSeparator < 0 || resourceSeparator < 0) {
+			throw new MalformedURLException("Invalid nested jar resource: " + uri);
+		}
+		var registered = openJars.get(path.substring(0, resourceSeparator));
+		var jar = registered == null ? null : registered.get();
+		if (jar == null) {
+			var zip = MappedZip.open(Path.of(URI.create(path.substring(0, jarSeparator))));
+			String jarName = path.substring(jarSeparator + SEPARATOR.length(), resourceSeparator);
+			jar = zip.nested(zip.entry(jarName).orElseThrow(() -> new FileNotFoundException(uri.toString())));
+		}
+		String resource = path.substring(resourceSeparator + SEPARATOR.length());
+		var entry = jar.entry(resource).orElseThrow(() -> new FileNotFoundException(uri.toString()));
+		return new ByteBufferInputStream(jar.read(entry));
+	}
+
+
+	private static void register(MappedZip jar) {
+		openJars.values().removeIf(registered -> registered.get() == null);
+		openJars.put(jar.location(), new WeakReference<>(jar));
+	}
+
+
+
+	private final Path zipFile;
+	private final Map<String, ModuleReference> references = new LinkedHashMap<>();
+	private final Map<String, ModuleDescriptor> descriptors;
+	private volatile MappedZip zip;
+
+
+	private NestedJarModuleFinder(Path zipFile, MappedZip zip, Map<String, ModuleDescriptor> descriptors) {
+		this.zipFile = zipFile.toAbsolutePath().normalize();
+		this.zip = zip;
+		this.descriptors = Collections.unmodifiableMap(new LinkedHashMap<>(descriptors));
+		String location = this.zipFile.toUri().toString();
+		descriptors.forEach((jarName, descriptor) -> references.putIfAbsent(
+			descriptor.name(),
+			new ModuleReference(descriptor, uri(location + SEPARATOR + jarName)) {
+				@Override
+				public ModuleReader open() throws IOException {
+					var mapped = zip();
+					var jar = mapped.nested(mapped.entry(jarName).orElseThrow(
+						() -> new FileNotFoundException(location + SEPARATOR + jarName)
+					));
+					var reader = new NestedJarModuleReader(jar, contents(jar, manifest(jar)));
+					register(jar);
+					return reader;
+				}
+			}
+		));
+	}
+
+
+	/**
+	 * Release the mapping of the zip file kept by this finder. Module readers
+	 * already open keep their own reference to it, and any module read afterwards
+	 * maps the file again.
+	 */
+	public void release() {
+		zip = null;
+	}
+
+
+	/**
+	 * @return The descriptor of the module found in each jar file, keyed by the
+	 *         name of the jar entry within the zip file
+	 */
+	public Map<String, ModuleDescriptor> descriptors() {
+		return descriptors;
+	}
+
+
+	@Override
+	public Optional<ModuleReference> find(String name) {
+		return Optional.ofNullable(references.get(name));
+	}
+
+
+	@Override
+	public Set<ModuleReference> findAll() {
+		return Set.copyOf(references.values());
+	}
+
+
+	private synchronized MappedZip zip() throws IOException {
+		var mapped = zip;
+		if (mapped == null) {
+			mapped = MappedZip.open(zipFile);
+			zip = mapped;
+		}
+		return mapped;
+	}
+
+
+
+	private static ModuleDescriptor descriptor(MappedZip jar, String fileName) throws IOException {
+		var manifest = manifest(jar);
+		var contents = contents(jar, manifest);
+		var moduleInfo = contents.get(MODULE_INFO);
+		if (moduleInfo != null) {
+			Set<String> packages = packages(contents, name -> true);
+			return ModuleDescriptor.read(jar.read(moduleInfo), () -> packages);
+		}
+		Set<String> packages = packages(contents, name -> name.endsWith(".class"));
+		return automaticModuleDescriptor(jar, contents, manifest, fileName, packages);
+	}
+
+
+	private static Manifest manifest(MappedZip jar) throws IOException {
+		var manifestEntry = jar.entry(JarFile.MANIFEST_NAME);
+		return manifestEntry.isPresent() ?
+			new Manifest(new ByteBufferInputStream(jar.read(manifestEntry.get()))) :
+			new Manifest();
+	}
+
+
+	/*
+	 * The entries of the jar as seen by the current runtime: in multi-release jars,
+	 * an entry within META-INF/versions/N replaces the regular entry if N is not
+	 * greater than the runtime version
+	 */
+	private static Map<String, MappedZip.Entry> contents(MappedZip jar, Manifest manifest) {
+		Map<String, MappedZip.Entry> contents = new LinkedHashMap<>();
+		jar.entries().filter(it -> !it.name().startsWith(VERSIONS)).forEach(it -> contents.put(it.name(), it));
+		if (!Boolean.parseBoolean(manifest.getMainAttributes().getValue("Multi-Release"))) {
+			return contents;
+		}
+		int runtimeVersion = Runtime.version().feature();
+		Map<String, Integer> versions = new HashMap<>();
+		jar.entries().filter(it -> it.name().startsWith(VERSIONS)).forEach(entry -> {
+			String versioned = entry.name().substring(VERSIONS.length());
+			int slash = versioned.indexOf('/');
+			if (slash <= 0 || slash == versioned.length() - 1) {
+				return;
+			}
+			try {
+				int version = Integer.parseInt(versioned.substring(0, slash));
+				String name = versioned.substring(slash + 1);
+				if (version >= 9 && version <= runtimeVersion && version > versions.getOrDefault(name, 0)) {
+					versions.put(name, version);
+					contents.put(name, entry);
+				}
+			} catch (NumberFormatException e) {
+				// not a versioned entry
+			}
+		});
+		return contents;
+	}
+
+
+	private static Set<String> packages(Map<String, MappedZip.Entry> contents, Predicate<String> filter) {
+		return contents.entrySet().stream()
+			.filter(it -> !it.getValue().isDirectory())
+			.map(Map.Entry::getKey)
+			.filter(filter)
+			.map(NestedJarModuleFinder::packageOf)
+			.flatMap(Optional::stream)
+			.collect(Collectors.toSet());
+	}
+
+
+	private static ModuleDescriptor automaticModuleDescriptor(
+		MappedZip jar,
+		Map<String, MappedZip.Entry> contents,
+		Manifest manifest,
+		String fileName,
+		Set<String> packages
+	) throws IOException {
+		String name = manifest.getMainAttributes().getValue("Automatic-Module-Name");
+		String version = null;
+		String baseName = fileName.substring(0, fileName.length() - ".jar".length());
+		var matcher = DASH_VERSION.matcher(baseName);
+		if (matcher.find()) {
+			version = baseName.substring(matcher.start() + 1);
+			baseName = baseName.substring(0, matcher.start());
+		}
+		if (name == null) {
+			name = NON_ALPHANUM.matcher(baseName).replaceAll(".");
+			name = REPEATING_DOTS.matcher(name).replaceAll(".");
+			name = LEADING_DOTS.matcher(name).replaceAll("");
+			name = TRAILING_DOTS.matcher(name).replaceAll("");
+		}
+		var builder = ModuleDescriptor.newAutomaticModule(name).packages(packages);
+		if (version != null) {
+			try {
+				builder.version(version);
+			} catch (IllegalArgumentException e) {
+				// ignored, as ModuleFinder.of does
+			}
+		}
+		for (var entry : contents.entrySet()) {
+			if (isService(entry.getKey(), entry.getValue())) {
+				var providers = providers(jar.read(entry.getValue()), packages);
+				if (!providers.isEmpty()) {
+					builder.provides(entry.getKey().substring(SERVICES.length()), providers);
+				}
+			}
+		}
+		String mainClass = manifest.getMainAttributes().getValue(Attributes.Name.MAIN_CLASS);
+		if (mainClass != null) {
+			int dot = mainClass.lastIndexOf('.');
+			if (dot > 0 && packages.contains(mainClass.substring(0, dot))) {
+				builder.mainClass(mainClass);
+			}
+		}
+		return builder.build();
+	}
+
+
+	private static boolean isService(String name, MappedZip.Entry entry) {
+		return name.startsWith(SERVICES) && name.indexOf('/', SERVICES.length()) < 0 && !entry.isDirectory();
+	}
+
+
+	private static List<String> providers(ByteBuffer content, Set<String> packages) throws IOException {
+		List<String> providers = new ArrayList<>();
+		var reader = new BufferedReader(new InputStreamReader(
+			new ByteBufferInputStream(content),
+			StandardCharsets.UTF_8
+		));
+		for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+			int comment = line.indexOf('#');
+			String provider = (comment < 0 ? line : line.substring(0, comment)).strip();
+			if (provider.isEmpty()) {
+				continue;
+			}
+			int dot = provider.lastIndexOf('.');
+			if (dot <= 0 || !packages.contains(provider.substring(0, dot))) {
+				// as ModuleFinder.of does
+				throw new InvalidModuleDescriptorException("Provider class " + provider + " not in module");
+			}
+			if (!providers.contains(provider)) {
+				providers.add(provider);
+			}
+		}
+		return providers;
+	}
+
+
+	private static Optional<String> packageOf(String entryName) {
+		int slash = entryName.lastIndexOf('/');
+		if (slash <= 0 || entryName.startsWith("META-INF/")) {
+			return Optional.empty();
+		}
+		String packageName = entryName.substring(0, slash).replace('/', '.');
+		boolean valid = Stream.of(packageName.split("\\.", -1)).allMatch(NestedJarModuleFinder::isJavaIdentifier);
+		return valid ? Optional.of(packageName) : Optional.empty();
+	}
+
+
+	private static boolean isJavaIdentifier(String part) {
+		if (part.isEmpty() || !Character.isJavaIdentifierStart(part.codePointAt(0))) {
+			return false;
+		}
+		return part.codePoints().skip(1).allMatch(Character::isJavaIdentifierPart);
+	}
+
+
+	private static boolean isJar(MappedZip.Entry entry) {
+		return !entry.isDirectory() && entry.name().endsWith(".jar");
+	}
+
+
+	private static String fileName(String entryName) {
+		return entryName.substring(entryName.lastIndexOf('/') + 1);
+	}
+
+
+	private static URI uri(String location) {
+		try {
+			return new URI(SCHEME, location, null);
+		} catch (URISyntaxException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+
+
+	private static final class NestedJarModuleReader implements ModuleReader {
+
+		private final MappedZip jar;
+		private final Map<String, MappedZip.Entry> contents;
+
+		private NestedJarModuleReader(MappedZip jar, Map<String, MappedZip.Entry> contents) {
+			this.jar = jar;
+			this.contents = contents;
+		}
+
+		@Override
+		public Optional<URI> find(String name) {
+			return entry(name).map(entry -> uri(jar.location() + SEPARATOR + entry.name()));
+		}
+
+		@Override
+		public Optional<InputStream> open(String name) throws IOException {
+			var buffer = read(name);
+			return buffer.isEmpty() ? Optional.empty() : Optional.of(new ByteBufferInputStream(buffer.get()));
+		}
+
+		@Override
+		public Optional<ByteBuffer> read(String name) throws IOException {
+			var entry = contents.get(name);
+			return entry == null || entry.isDirectory() ? Optional.empty() : Optional.of(jar.read(entry));
+		}
+
+		@Override
+		public Stream<String> list() {
+			return contents.keySet().stream();
+		}
+
+		@Override
+		public void close() {
+			// the mapped archive is released when no longer referenced
+			openJars.computeIfPresent(jar.location(), (location, registered) -> registered.get() == jar ? null : registered);
+		}
+
+		private Optional<MappedZip.Entry> entry(String name) {
+			return Optional.ofNullable(contents.get(name)).or(() -> Optional.ofNullable(contents.get(name + "/")));
+		}
+	}
+
+
+
+	private static final class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		private ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer.duplicate();
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? Byte.toUnsignedInt(buffer.get()) : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (length == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+
+}
@@ -0,0 +1,46 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.internal;
+
+import java.io.*;
+import java.net.*;
+import java.net.spi.URLStreamHandlerProvider;
+
+
+/**
+ * Provides the URL handler for the resources of the modules found by
+ * {@link NestedJarModuleFinder}, so they can be accessed using the regular
+ * resource methods of {@link Module} and {@link ClassLoader}.
+ * <p>
+ * It is registered as a service in the module descriptor; notice that the
+ * JDK only discovers URL handler providers from the system class loader.
+ */
+public final class NestedJarURLStreamHandlerProvider extends URLStreamHandlerProvider {
+
+	@Override
+	public URLStreamHandler createURLStreamHandler(String protocol) {
+		if (!NestedJarModuleFinder.SCHEME.equals(protocol)) {
+			return null;
+		}
+		return new URLStreamHandler() {
+			@Override
+			protected URLConnection openConnection(URL url) {
+				return new URLConnection(url) {
+					@Override
+					public void connect() {
+						connected = true;
+					}
+					@Override
+					public InputStream getInputStream() throws IOException {
+						try {
+							return NestedJarModuleFinder.open(url.toURI());
+						} catch (URISyntaxException e) {
+							throw new MalformedURLException(e.getMessage());
+						}
+					}
+				};
+			}
+		};
+	}
+
+}
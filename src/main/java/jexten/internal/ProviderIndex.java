@@ -0,0 +1,40 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.internal;
+
+import java.util.List;
+import java.util.ServiceLoader.Provider;
+
+
+/**
+ * The validated providers of an extension point, sorted by priority.
+ * <p>
+ * Each index is bound to the snapshot of module layers used to build it, so
+ * it can be reused by every lookup as long as the layer provider keeps
+ * returning the same layers.
+ */
+record ProviderIndex<T>(List<ModuleLayer> layers, List<Entry<T>> entries) {
+
+	/**
+	 * A provider along with the extension metadata of its type and, if it is loaded
+	 * with a custom loader, the loader class (<code>null</code> otherwise)
+	 */
+	record Entry<T>(Provider<T> provider, ExtensionMetadata metadata, Class<?> loaderType) {
+		Class<? extends T> type() {
+			return provider.type();
+		}
+	}
+
+
+	ProviderIndex {
+		layers = List.copyOf(layers);
+		entries = List.copyOf(entries);
+	}
+
+
+	boolean isBuiltFor(List<ModuleLayer> currentLayers) {
+		// module layers do not override equals, so this is an identity comparison
+		return layers.equals(currentLayers);
+	}
+
+}
@@ -0,0 +1,201 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.internal;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+
+/**
+ * Registry of the shared instances (global extensions and extension loaders)
+ * of an extension manager.
+ * <p>
+ * Each type is initialized only once even when several threads request it at the
+ * same time, but the initialization of a type only blocks the threads requesting
+ * that same type. The constructors are never invoked while holding a lock of the
+ * registry, so they are free to request other instances; requesting an instance
+ * that is already being initialized along the same chain is reported as a
+ * circular dependency instead of blocking forever.
+ * <p>
+ * Failed initializations are not registered, so the next request would try
+ * again.
+ * <p>
+ * The instances are attached to their own classes by means of a {@link ClassValue}
+ * instead of being kept in a map keyed by class. This way, the registry does not
+ * prevent the class loader of a discarded module layer from being collected,
+ * along with every instance created from it. The classes with a slot are tracked
+ * weakly, so clearing the registry can remove every slot at once instead of
+ * waiting for the class value to be collected.
+ */
+final class SingletonRegistry {
+
+	// the slot each thread is currently waiting for, used to detect cross-thread cycles
+	private static final Map<Thread, Slot> waiting = new ConcurrentHashMap<>();
+	// checking the wait chain and registering the wait must be atomic, otherwise two
+	// threads could miss each other and wait forever
+	private static final Object waitingLock = new Object();
+	// the types being initialized by each thread, used to describe cycles
+	private static final ThreadLocal<Deque<Class<?>>> initializing = ThreadLocal.withInitial(ArrayDeque::new);
+
+
+	private volatile Slots slots = new Slots();
+
+
+	/**
+	 * @return The instance of the given type, creating it with the given factory if required
+	 * @throws IllegalStateException if the type is already being initialized by the
+	 *                               chain of the current thread
+	 */
+	Optional<Object> get(Class<?> type, Function<Class<?>, Optional<?>> factory) {
+		return slots.get(type).get(factory);
+	}
+
+
+	boolean contains(Class<?> type) {
+		return slots.get(type).instance != null;
+	}
+
+
+	/*
+	 * The slots are removed explicitly, since the values of a discarded class value
+	 * would otherwise be held by each class until it is accessed again
+	 */
+	void clear() {
+		Slots discarded = slots;
+		slots = new Slots();
+		discarded.removeAll();
+	}
+
+
+
+	private static final class Slots extends ClassValue<Slot> {
+
+		// values of a class value cannot be enumerated, so the classes are tracked apart
+		private final Set<Class<?>> types = Collections.newSetFromMap(new WeakHashMap<>());
+
+		@Override
+		protected Slot computeValue(Class<?> type) {
+			synchronized (types) {
+				types.add(type);
+			}
+			return new Slot(type);
+		}
+
+
+		private void removeAll() {
+			List<Class<?>> removed;
+			synchronized (types) {
+				removed = new ArrayList<>(types);
+				types.clear();
+			}
+			removed.forEach(this::remove);
+		}
+
+	}
+
+
+
+	private static final class Slot {
+
+		private final Class<?> type;
+		private volatile Object instance;
+		private volatile Thread initializer;
+
+		private Slot(Class<?> type) {
+			this.type = type;
+		}
+
+
+		private Optional<Object> get(Function<Class<?>, Optional<?>> factory) {
+			Object current = instance;
+			if (current != null) {
+				return Optional.of(current);
+			}
+			Thread thread = Thread.currentThread();
+			synchronized (this) {
+				while (true) {
+					if (instance != null) {
+						return Optional.of(instance);
+					}
+					if (initializer == null) {
+						initializer = thread;
+						break;
+					}
+					awaitInitializer(thread);
+				}
+			}
+			Object created = null;
+			initializing.get().push(type);
+			try {
+				created = factory.apply(type).orElse(null);
+				return Optional.ofNullable(created);
+			} finally {
+				initializing.get().pop();
+				synchronized (this) {
+					instance = created;
+					initializer = null;
+					notifyAll();
+				}
+			}
+		}
+
+
+		// must be called holding the lock of this slot
+		private void awaitInitializer(Thread thread) {
+			List<Class<?>> chain;
+			synchronized (waitingLock) {
+				chain = waitChain(thread);
+				if (chain == null) {
+					waiting.put(thread, this);
+				}
+			}
+			if (chain != null) {
+				throw new IllegalStateException(String.format(
+					"Circular dependency detected creating global extension %s : %s",
+					type.getCanonicalName(),
+					String.join(" -> ", chain.stream().map(Class::getCanonicalName).toList())
+				));
+			}
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(
+					"Interrupted while waiting for global extension " + type.getCanonicalName(),
+					e
+				);
+			} finally {
+				waiting.remove(thread);
+			}
+		}
+
+
+		/*
+		 * Follows the threads this slot depends on (the initializer, the slot the
+		 * initializer is waiting for, and so on). If the chain ends up in the current
+		 * thread, waiting would never end, so the involved types are returned.
+		 */
+		private List<Class<?>> waitChain(Thread thread) {
+			Set<Thread> visited = new HashSet<>();
+			Slot slot = this;
+			while (slot != null) {
+				Thread owner = slot.initializer;
+				if (owner == null || !visited.add(owner)) {
+					return null;
+				}
+				if (owner == thread) {
+					List<Class<?>> chain = new ArrayList<>(initializing.get());
+					Collections.reverse(chain);
+					int start = chain.indexOf(type);
+					chain = new ArrayList<>(start < 0 ? chain : chain.subList(start, chain.size()));
+					chain.add(type);
+					return chain;
+				}
+				slot = waiting.get(owner);
+			}
+			return null;
+		}
+	}
+
+}
@@ -42,6 +42,23 @@ public interface ArtifactResolver {
     }
 
 
+    /**
+     * Get the latest versions of several plugins at once. By default, the plugins
+     * are resolved in order to know their versions, but implementations may provide
+     * a lighter way.
+     * @return The latest version of each plugin, excluding those with no version available
+     * @throws PluginException if the plugins could not be resolved
+     */
+    default Map<PluginID,Version> latestVersions(Collection<PluginID> pluginIDs) {
+        Map<PluginID,Version> versions = new HashMap<>();
+        resolvePlugins(pluginIDs)
+            .map(ArtifactPath::artifactID)
+            .filter(id -> pluginIDs.contains(id.pluginID()))
+            .forEach(id -> versions.merge(id.pluginID(), id.version(), (a, b) -> a.compareTo(b) >= 0 ? a : b));
+        return versions;
+    }
+
+
     default Stream<ArtifactPath> resolveArtifact(ArtifactID artifactID) {
         return resolveArtifacts(List.of(artifactID));
     }
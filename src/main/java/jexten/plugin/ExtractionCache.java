@@ -0,0 +1,150 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.plugin;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.*;
+import java.util.*;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+
+
+/**
+ * Persistent folder where the plugin zip files are extracted, so that unchanged
+ * plugins can reuse their extracted jars across restarts.
+ * <p>
+ * Each plugin file is extracted in a folder named after the file name, size and
+ * last modification time of the zip file, so any change of the file would result
+ * in a new extraction. The extraction is done in a temporary folder that is moved
+ * to its final location only once it is complete; that way, an extraction
+ * interrupted by a crash is never taken as valid.
+ */
+final class ExtractionCache {
+
+	private static final String TEMPORARY_MARK = ".tmp-";
+	private static final String COMPLETE_MARK = ".complete";
+	// temporary folders may belong to another process still extracting
+	private static final Duration TEMPORARY_EXPIRATION = Duration.ofMinutes(10);
+
+	private final Path folder;
+	private final Logger logger;
+
+
+	ExtractionCache(Path folder, Logger logger) {
+		this.folder = folder;
+		this.logger = logger;
+	}
+
+
+	/**
+	 * @return The folder containing the extracted content of the given plugin file,
+	 * extracting it if required
+	 */
+	Path extract(PluginZipFile zipFile) throws IOException {
+		Path target = folder.resolve(keyOf(zipFile.path()));
+		if (isComplete(target)) {
+			logger.debug("plugin {} already extracted in {}", zipFile.pluginID(), target);
+			return target;
+		}
+		Files.createDirectories(folder);
+		Path temporary = Files.createTempDirectory(folder, target.getFileName() + TEMPORARY_MARK);
+		try {
+			zipFile.unzip(temporary);
+			Files.createFile(temporary.resolve(COMPLETE_MARK));
+			Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+			logger.debug("plugin {} extracted in {}", zipFile.pluginID(), target);
+		} catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+			// another process has extracted the same file meanwhile
+			if (!isComplete(target)) {
+				throw e;
+			}
+		} finally {
+			delete(temporary, logger);
+		}
+		return target;
+	}
+
+
+	/**
+	 * Remove every extraction that does not belong to any of the given plugin files
+	 * and is not still in use, as well as the leftovers of extractions that were
+	 * never finished
+	 */
+	void retain(Collection<Path> zipFiles, Set<Path> extractionsInUse) {
+		if (Files.notExists(folder)) {
+			return;
+		}
+		Set<String> validKeys = new HashSet<>();
+		for (Path zipFile : zipFiles) {
+			try {
+				validKeys.add(keyOf(zipFile));
+			} catch (IOException e) {
+				logger.debug("", e);
+			}
+		}
+		try (Stream<Path> entries = Files.list(folder)) {
+			entries
+				.filter(entry -> isObsolete(entry, validKeys))
+				.filter(entry -> !extractionsInUse.contains(entry))
+				.forEach(entry -> {
+					logger.debug("removing obsolete plugin extraction {}", entry);
+					delete(entry, logger);
+				});
+		} catch (IOException e) {
+			logger.warn("Cannot clean plugin extraction folder {}: {}", folder, e.getMessage());
+			logger.debug("", e);
+		}
+	}
+
+
+	private boolean isObsolete(Path entry, Set<String> validKeys) {
+		String name = entry.getFileName().toString();
+		if (name.contains(TEMPORARY_MARK)) {
+			try {
+				var expiration = Instant.now().minus(TEMPORARY_EXPIRATION);
+				return Files.getLastModifiedTime(entry).toInstant().isBefore(expiration);
+			} catch (IOException e) {
+				return false;
+			}
+		}
+		return !validKeys.contains(name) || !isComplete(entry);
+	}
+
+
+	private static String keyOf(Path zipFile) throws IOException {
+		String fileName = zipFile.getFileName().toString();
+		if (fileName.endsWith(".zip")) {
+			fileName = fileName.substring(0, fileName.length() - ".zip".length());
+		}
+		long size = Files.size(zipFile);
+		FileTime modified = Files.getLastModifiedTime(zipFile);
+		return fileName + "-" + Long.toHexString(size) + "-" + Long.toHexString(modified.toMillis());
+	}
+
+
+	private static boolean isComplete(Path extraction) {
+		return Files.exists(extraction.resolve(COMPLETE_MARK));
+	}
+
+
+	static void delete(Path path, Logger logger) {
+		if (Files.notExists(path)) {
+			return;
+		}
+		try (Stream<Path> contents = Files.walk(path)) {
+			contents.sorted(Comparator.reverseOrder()).forEach(file -> {
+				try {
+					Files.deleteIfExists(file);
+				} catch (IOException e) {
+					// files may be locked by a module layer still in use
+					logger.debug("cannot delete {}: {}", file, e.getMessage());
+				}
+			});
+		} catch (IOException e) {
+			logger.debug("cannot delete {}: {}", path, e.getMessage());
+		}
+	}
+
+}
@@ -33,4 +33,31 @@ public class FilteredPluginStore implements ModuleLayerProvider {
 	}
 
 
+	@Override
+	public Stream<ModuleLayer> moduleLayers(Class<?> extensionPoint) {
+		var layers = pluginStore.moduleLayersByPlugin(extensionPoint)
+			.entrySet().stream()
+			.filter(entry -> filter.test(entry.getKey()))
+			.map(Map.Entry::getValue)
+			.toList();
+		// the boot layer would be reachable from any filtered plugin layer
+		if (layers.isEmpty() && pluginStore.plugins().anyMatch(filter)) {
+			return Stream.of(ModuleLayer.boot());
+		}
+		return layers.stream();
+	}
+
+
+	@Override
+	public void addChangeListener(Runnable listener) {
+		pluginStore.addChangeListener(listener);
+	}
+
+
+	@Override
+	public long version() {
+		return pluginStore.version();
+	}
+
+
 }
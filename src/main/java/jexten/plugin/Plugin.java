@@ -6,6 +6,7 @@ import java.util.*;
 
 import java.util.stream.Stream;
 import jexten.Version;
+import jexten.internal.NestedJarModuleFinder;
 import org.slf4j.Logger;
 
 /**
@@ -31,11 +32,36 @@ public class Plugin {
 		List<Path> primaryPaths,
 		List<Path> additionalPaths,
 		Logger logger
+	) {
+		this(manifest, zipFile, primaryPaths, moduleFinderOf(primaryPaths,additionalPaths), logger);
+	}
+
+
+	/**
+	 * Create a plugin whose modules are located by the given module finder instead
+	 * of a set of jar files
+	 */
+	public Plugin(
+		PluginManifest manifest,
+		PluginZipFile zipFile,
+		ModuleFinder moduleFinder,
+		Logger logger
+	) {
+		this(manifest, zipFile, List.of(), moduleFinder, logger);
+	}
+
+
+	private Plugin(
+		PluginManifest manifest,
+		PluginZipFile zipFile,
+		List<Path> primaryPaths,
+		ModuleFinder moduleFinder,
+		Logger logger
 	) {
 		this.manifest = manifest;
 		this.zipFile = zipFile;
 		this.primaryPaths = primaryPaths;
-		this.moduleFinder = moduleFinderOf(primaryPaths,additionalPaths);
+		this.moduleFinder = moduleFinder;
 		this.logger = logger;
 		this.moduleReferences = moduleFinder.findAll();
 		if (this.moduleReferences.isEmpty()) {
@@ -85,6 +111,37 @@ public class Plugin {
 
 
 
+	/**
+	 * @return The names of every Java module contained in the plugin
+	 */
+	Stream<String> moduleNames() {
+		return moduleReferences.stream().map(ModuleReference::descriptor).map(ModuleDescriptor::name);
+	}
+
+
+	/**
+	 * @return The names of the services provided by any Java module contained in
+	 *         the plugin, as declared by their module descriptors
+	 */
+	Stream<String> providedServices() {
+		return moduleReferences.stream()
+			.map(ModuleReference::descriptor)
+			.flatMap(descriptor -> descriptor.provides().stream())
+			.map(ModuleDescriptor.Provides::service);
+	}
+
+
+	/**
+	 * @return The module descriptors of the jar files read in place from the plugin
+	 *         file, keyed by jar name, or an empty map if the plugin file was extracted
+	 */
+	Map<String,ModuleDescriptor> nestedModuleDescriptors() {
+		return moduleFinder instanceof NestedJarModuleFinder nestedJarModuleFinder ?
+			nestedJarModuleFinder.descriptors() :
+			Map.of();
+	}
+
+
 	public boolean isHostedBy(ModuleLayer moduleLayer) {
 		return moduleLayer.modules().stream()
 			.map(Module::getName)
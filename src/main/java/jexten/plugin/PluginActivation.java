@@ -0,0 +1,254 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.plugin;
+
+import java.util.*;
+import java.util.concurrent.*;
+import jexten.plugin.tree.ModuleLayerTree;
+import org.slf4j.Logger;
+
+/**
+ * This class defines the module layers of a set of plugins on demand.
+ * <p>
+ * The plugins form a tree according to their parent module, so activating a
+ * plugin activates its host first, and the layer of each plugin is built as soon
+ * as the layer of its host is ready. That way, sibling layers are resolved and
+ * defined concurrently.
+ * <p>
+ * The layer of a plugin already activated by the previous activation is reused as
+ * long as its host layer has been reused as well, so only new plugins and the
+ * descendants of changed plugins are actually built.
+ * <p>
+ * Plugins are activated either all at once or by extension point. In the latter
+ * case, only the plugins providing the extension point are activated, according
+ * to an index built from the extensions declared in the plugin manifests and the
+ * services provided by the module descriptors of the plugins.
+ */
+class PluginActivation {
+
+	private static final ModuleLayer bootLayer = ModuleLayer.boot();
+
+	// every plugin that can be activated, sorted by name
+	private final List<Plugin> plugins;
+	// the host of each plugin, null for plugins hosted by the boot layer
+	private final Map<Plugin,Plugin> hosts = new HashMap<>();
+	// the plugins providing each extension point, keyed by its name
+	private final Map<String,List<Plugin>> extensionPointIndex;
+	// only the layers of plugins still present, so the rest can be released
+	private final Map<Plugin,ModuleLayer> previousLayers;
+	// released once the layer tree is built
+	private volatile ModuleLayerTree previousTree;
+	private final Map<Plugin,CompletableFuture<Optional<ModuleLayer>>> activations = new ConcurrentHashMap<>();
+	private final ClassLoader parentClassLoader;
+	private final Executor executor;
+	private final Logger logger;
+	// computed once every plugin is activated
+	private volatile Map<Plugin,ModuleLayer> allLayers;
+	private volatile ModuleLayerTree layerTree;
+
+
+	PluginActivation(
+		Collection<Plugin> plugins,
+		PluginActivation previous,
+		ClassLoader parentClassLoader,
+		Executor executor,
+		Logger logger
+	) {
+		this.parentClassLoader = parentClassLoader;
+		this.executor = executor;
+		this.logger = logger;
+		this.plugins = resolveHosts(plugins);
+		this.extensionPointIndex = indexExtensionPoints(this.plugins);
+		// the same plugin instance is returned by the reader while the file is unchanged
+		this.previousLayers = previous == null ? Map.of() : previous.activatedLayers(this.plugins);
+		this.previousTree = previous == null ? null : previous.layerTree;
+	}
+
+
+	/**
+	 * @return The layers of every plugin, activating them if required
+	 */
+	Map<Plugin,ModuleLayer> activateAll() {
+		var layers = allLayers;
+		if (layers == null) {
+			layers = activate(plugins);
+			allLayers = layers;
+		}
+		return layers;
+	}
+
+
+	/**
+	 * @return The layers of every plugin, once activated, without waiting for them
+	 */
+	CompletableFuture<Map<Plugin,ModuleLayer>> activateAllAsync() {
+		var pendingLayers = plugins.stream().map(this::activate).toArray(CompletableFuture<?>[]::new);
+		return CompletableFuture.allOf(pendingLayers).thenApply(done -> activateAll());
+	}
+
+
+	/**
+	 * @return The layers of the plugins providing extensions for the given extension
+	 *         point, activating them if required
+	 */
+	Map<Plugin,ModuleLayer> activateFor(Class<?> extensionPoint) {
+		return activate(pluginsProviding(extensionPoint));
+	}
+
+
+	boolean hasPlugins() {
+		return !plugins.isEmpty();
+	}
+
+
+	/**
+	 * @return The plugins providing each extension point, keyed by its name
+	 */
+	Map<String,List<Plugin>> extensionPointIndex() {
+		return extensionPointIndex;
+	}
+
+
+	/*
+	 * Manifests may declare nested extension points by their canonical name
+	 */
+	private List<Plugin> pluginsProviding(Class<?> extensionPoint) {
+		var providers = extensionPointIndex.getOrDefault(extensionPoint.getName(), List.of());
+		String canonicalName = extensionPoint.getCanonicalName();
+		if (canonicalName == null || canonicalName.equals(extensionPoint.getName())) {
+			return providers;
+		}
+		Set<Plugin> allProviders = new HashSet<>(providers);
+		allProviders.addAll(extensionPointIndex.getOrDefault(canonicalName, List.of()));
+		return allProviders.stream().sorted(Comparator.comparing(Plugin::toString)).toList();
+	}
+
+
+	ModuleLayerTree layerTree() {
+		var tree = layerTree;
+		if (tree == null) {
+			tree = new ModuleLayerTree(activateAll(), previousTree);
+			layerTree = tree;
+			previousTree = null;
+		}
+		return tree;
+	}
+
+
+	/*
+	 * The ancestors of the given plugins are activated as well, but they are only
+	 * returned if requested
+	 */
+	private Map<Plugin,ModuleLayer> activate(List<Plugin> requested) {
+		var pendingLayers = requested.stream().map(this::activate).toList();
+		Map<Plugin,ModuleLayer> layers = new LinkedHashMap<>();
+		for (int i = 0; i < requested.size(); i++) {
+			var plugin = requested.get(i);
+			pendingLayers.get(i).join().ifPresent(layer -> layers.put(plugin, layer));
+		}
+		return Collections.unmodifiableMap(layers);
+	}
+
+
+	private CompletableFuture<Optional<ModuleLayer>> activate(Plugin plugin) {
+		var activation = activations.get(plugin);
+		if (activation != null) {
+			return activation;
+		}
+		Plugin host = hosts.get(plugin);
+		var hostLayer = host == null ?
+			CompletableFuture.completedFuture(Optional.of(bootLayer)) :
+			activate(host);
+		return activations.computeIfAbsent(plugin, it -> hostLayer
+			.thenApplyAsync(parentLayer -> parentLayer.flatMap(layer -> reuseOrBuildModuleLayer(plugin, layer)), executor)
+			.exceptionally(e -> {
+				var cause = e.getCause() == null ? e : e.getCause();
+				logger.error("Cannot build the module layer of plugin {} : {}", plugin, cause.getMessage());
+				logger.debug("", cause);
+				return Optional.empty();
+			})
+		);
+	}
+
+
+	private Optional<ModuleLayer> reuseOrBuildModuleLayer(Plugin plugin, ModuleLayer parentLayer) {
+		var previousLayer = previousLayers.get(plugin);
+		if (previousLayer != null && previousLayer.parents().contains(parentLayer)) {
+			logger.debug("reusing module layer of plugin {}", plugin);
+			return Optional.of(previousLayer);
+		}
+		return plugin.buildModuleLayer(parentLayer, parentClassLoader);
+	}
+
+
+	private Map<Plugin,ModuleLayer> activatedLayers(Collection<Plugin> retainedPlugins) {
+		Set<Plugin> retained = Collections.newSetFromMap(new IdentityHashMap<>());
+		retained.addAll(retainedPlugins);
+		Map<Plugin,ModuleLayer> layers = new IdentityHashMap<>();
+		activations.forEach((plugin, activation) -> {
+			if (retained.contains(plugin) && activation.isDone()) {
+				activation.join().ifPresent(layer -> layers.put(plugin, layer));
+			}
+		});
+		return layers;
+	}
+
+
+	private static Map<String,List<Plugin>> indexExtensionPoints(List<Plugin> plugins) {
+		Map<String,List<Plugin>> index = new HashMap<>();
+		for (Plugin plugin : plugins) {
+			Set<String> extensionPoints = new HashSet<>();
+			if (plugin.manifest().extensions() != null) {
+				extensionPoints.addAll(plugin.manifest().extensions().keySet());
+			}
+			plugin.providedServices().forEach(extensionPoints::add);
+			extensionPoints.forEach(extensionPoint ->
+				index.computeIfAbsent(extensionPoint, it -> new ArrayList<>()).add(plugin)
+			);
+		}
+		index.replaceAll((extensionPoint, providers) -> List.copyOf(providers));
+		return Map.copyOf(index);
+	}
+
+
+	/*
+	 * A plugin is hosted by the boot layer if it contains the parent module;
+	 * otherwise, by the plugin containing such module
+	 */
+	private List<Plugin> resolveHosts(Collection<Plugin> plugins) {
+		var sortedPlugins = plugins.stream().sorted(Comparator.comparing(Plugin::toString)).toList();
+		Map<String,Plugin> pluginsByModule = new HashMap<>();
+		for (Plugin plugin : sortedPlugins) {
+			plugin.moduleNames().forEach(module -> pluginsByModule.putIfAbsent(module, plugin));
+		}
+		List<Plugin> hostedPlugins = new ArrayList<>();
+		for (Plugin plugin : sortedPlugins) {
+			String parentModule = plugin.manifest().parentModule();
+			Plugin host = null;
+			if (bootLayer.findModule(parentModule).isEmpty()) {
+				host = pluginsByModule.get(parentModule);
+				if (host == null || host == plugin) {
+					logger.warn("Plugin {} ignored: parent module {} is not present", plugin, parentModule);
+					continue;
+				}
+			}
+			hosts.put(plugin, host);
+			hostedPlugins.add(plugin);
+		}
+		// plugins hosted by an ignored plugin cannot be activated either
+		hostedPlugins.removeIf(plugin -> !isHosted(plugin));
+		return List.copyOf(hostedPlugins);
+	}
+
+
+	private boolean isHosted(Plugin plugin) {
+		Set<Plugin> visited = new HashSet<>();
+		for (Plugin current = plugin; current != null; current = hosts.get(current)) {
+			if (!hosts.containsKey(current) || !visited.add(current)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
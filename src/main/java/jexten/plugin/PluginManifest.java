@@ -106,8 +106,8 @@ public record PluginManifest(
         put(map, PLUGIN_JAR_FILE, pluginJarFile);
         put(map, PLUGIN_APPLICATION_ARTIFACT, applicationArtifact);
         put(map, PLUGIN_APPLICATION_MODULE, applicationModule);
-        put(map, PLUGIN_PARENT_ARTIFACT, applicationArtifact);
-        put(map, PLUGIN_PARENT_MODULE, applicationModule);
+        put(map, PLUGIN_PARENT_ARTIFACT, parentArtifact);
+        put(map, PLUGIN_PARENT_MODULE, parentModule);
         put(map, PLUGIN_NAME, name);
         put(map, PLUGIN_URL, url);
         put(map, PLUGIN_DESCRIPTION, description);
@@ -3,8 +3,13 @@
 package jexten.plugin;
 
 import java.io.IOException;
+import java.lang.module.ModuleDescriptor;
 import java.nio.file.*;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import jexten.internal.MappedZip;
+import jexten.internal.NestedJarModuleFinder;
 import org.slf4j.*;
 
 /**
@@ -12,38 +17,105 @@ import org.slf4j.*;
  * <p>
  * Standalone plugins are distributed as single zip files with every
  * dependency included within. They are suitable for offline installations.
+ * <p>
+ * Plugin files whose jar files are stored without compression (see
+ * {@link PluginZipFile#create(Path, Path, List, boolean)}) are read in place,
+ * otherwise they are extracted before being used.
+ * <p>
+ * The plugins read are cached by file path, size and modification time, so an
+ * unchanged file always results in the same {@link Plugin} instance. Cached plugins
+ * no longer in use are evicted (along with their extracted files or the mapping of
+ * the file read in place) once they have not been requested for a while, when the
+ * cache exceeds its size, or as soon as their file is removed or modified.
  */
-public record PluginReader(Logger logger)  {
+public class PluginReader {
 
+	static final int DEFAULT_CACHE_SIZE = 64;
+	static final Duration DEFAULT_CACHE_AGE = Duration.ofMinutes(30);
 
-	private static final Map<PluginZipFile,Plugin> cache = new HashMap<>();
 
+	private record CacheKey(Path path, long size, long lastModified) {
+		static Optional<CacheKey> of(Path path) {
+			try {
+				return Optional.of(new CacheKey(
+					path.toAbsolutePath().normalize(),
+					Files.size(path),
+					Files.getLastModifiedTime(path).toMillis()
+				));
+			} catch (IOException e) {
+				return Optional.empty();
+			}
+		}
+	}
 
 
-	public Optional<Plugin> readPlugin(PluginZipFile zipFile) {
+	private static final class CachedPlugin {
+		private final Plugin plugin;
+		// null if the plugin is read in place
+		private final Path extractionPath;
+		// null if the plugin is extracted
+		private final NestedJarModuleFinder moduleFinder;
+		private volatile long lastAccess = System.nanoTime();
+		private CachedPlugin(Plugin plugin, Path extractionPath, NestedJarModuleFinder moduleFinder) {
+			this.plugin = plugin;
+			this.extractionPath = extractionPath;
+			this.moduleFinder = moduleFinder;
+		}
+	}
 
-		try {
 
-			if (cache.containsKey(zipFile)) {
-				return Optional.of(cache.get(zipFile));
-			}
+	// plugins are read concurrently by the plugin store
+	private final Map<CacheKey,CachedPlugin> cache = new ConcurrentHashMap<>();
+	private final Logger logger;
+	private final ExtractionCache extractionCache;
+	private final int maxCacheSize;
+	private final Duration maxCacheAge;
 
-			Path temporaryPath = Files.createTempDirectory("jexten-plugin");
-			zipFile.unzip(temporaryPath);
-			logger.debug("plugin {} unzipped in {}", zipFile.pluginID(), temporaryPath);
-
-			try (var files = Files.list(temporaryPath)) {
-				Plugin plugin = new Plugin(
-					zipFile.pluginManifest(),
-					zipFile,
-					files.filter(file -> file.toString().endsWith(".jar")).toList(),
-					List.of(),
-					logger
-				);
-				cache.put(zipFile, plugin);
-				return Optional.of(plugin);
-			}
 
+	/**
+	 * Create a reader that extracts each plugin in a new temporary folder
+	 */
+	public PluginReader(Logger logger) {
+		this(logger, null, DEFAULT_CACHE_SIZE, DEFAULT_CACHE_AGE);
+	}
+
+
+	PluginReader(Logger logger, ExtractionCache extractionCache, int maxCacheSize, Duration maxCacheAge) {
+		this.logger = logger;
+		this.extractionCache = extractionCache;
+		this.maxCacheSize = maxCacheSize;
+		this.maxCacheAge = maxCacheAge;
+	}
+
+
+
+	public Optional<Plugin> readPlugin(PluginZipFile zipFile) {
+		return readPlugin(zipFile, Map.of());
+	}
+
+
+	/*
+	 * Plugin files whose jar files were already catalogued are read in place
+	 * using the given descriptors, so they are not read again. Plugin files that
+	 * must be extracted have no descriptors.
+	 */
+	Optional<Plugin> readPlugin(PluginZipFile zipFile, Map<String,ModuleDescriptor> descriptors) {
+		var key = CacheKey.of(zipFile.path());
+		var cached = key.map(cache::get).orElse(null);
+		if (cached != null) {
+			cached.lastAccess = System.nanoTime();
+			return Optional.of(cached.plugin);
+		}
+		try {
+			cached = newCachedPlugin(zipFile, descriptors);
+			if (key.isPresent()) {
+				var previous = cache.putIfAbsent(key.get(), cached);
+				if (previous != null) {
+					// read concurrently by another thread
+					return Optional.of(previous.plugin);
+				}
+			}
+			return Optional.of(cached.plugin);
 		} catch (IOException | RuntimeException e) {
 			logger.error(
 				"Invalid plugin file {}: {}",
@@ -55,4 +127,124 @@ public record PluginReader(Logger logger)  {
 		}
 	}
 
+
+	/**
+	 * Evict the cached plugins not included in the given ones whose file has been
+	 * removed or modified, or that have not been requested for longer than the maximum
+	 * age, as well as the least recently requested ones while the cache exceeds its
+	 * maximum size. The extracted files of the evicted plugins are removed, and the
+	 * mappings of the ones read in place are released.
+	 */
+	void evict(Collection<Plugin> pluginsInUse) {
+		Set<Plugin> inUse = Collections.newSetFromMap(new IdentityHashMap<>());
+		inUse.addAll(pluginsInUse);
+		long expiration = System.nanoTime() - maxCacheAge.toNanos();
+		var candidates = cache.entrySet().stream()
+			.filter(entry -> !inUse.contains(entry.getValue().plugin))
+			.sorted(Comparator.comparingLong(entry -> entry.getValue().lastAccess))
+			.toList();
+		int excess = cache.size() - maxCacheSize;
+		for (var candidate : candidates) {
+			boolean stale = !CacheKey.of(candidate.getKey().path()).equals(Optional.of(candidate.getKey()));
+			if (stale || excess > 0 || candidate.getValue().lastAccess - expiration < 0) {
+				if (cache.remove(candidate.getKey(), candidate.getValue())) {
+					excess--;
+					logger.debug("evicted cached plugin {} read from {}", candidate.getValue().plugin, candidate.getKey().path());
+					removeExtraction(candidate.getValue());
+					if (candidate.getValue().moduleFinder != null) {
+						candidate.getValue().moduleFinder.release();
+					}
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * @return The folders where the cached plugins were extracted
+	 */
+	Set<Path> extractionPaths() {
+		Set<Path> paths = new HashSet<>();
+		cache.values().forEach(cached -> {
+			if (cached.extractionPath != null) {
+				paths.add(cached.extractionPath);
+			}
+		});
+		return paths;
+	}
+
+
+	private CachedPlugin newCachedPlugin(
+		PluginZipFile zipFile,
+		Map<String,ModuleDescriptor> descriptors
+	) throws IOException {
+
+		if (!descriptors.isEmpty()) {
+			logger.debug("plugin {} read in place from {} using catalogued modules", zipFile.pluginID(), zipFile.path());
+			return readInPlace(zipFile, NestedJarModuleFinder.of(zipFile.path(), descriptors));
+		}
+
+		var mappedZip = mapZipFile(zipFile);
+		if (mappedZip.isPresent() && NestedJarModuleFinder.supports(mappedZip.get())) {
+			logger.debug("plugin {} read in place from {}", zipFile.pluginID(), zipFile.path());
+			return readInPlace(zipFile, NestedJarModuleFinder.of(zipFile.path(), mappedZip.get()));
+		}
+
+		Path extractionPath = extract(zipFile);
+		try (var files = Files.list(extractionPath)) {
+			return new CachedPlugin(new Plugin(
+				zipFile.pluginManifest(),
+				zipFile,
+				files.filter(file -> file.toString().endsWith(".jar")).toList(),
+				List.of(),
+				logger
+			), extractionPath, null);
+		}
+	}
+
+
+	private CachedPlugin readInPlace(PluginZipFile zipFile, NestedJarModuleFinder moduleFinder) {
+		return new CachedPlugin(
+			new Plugin(zipFile.pluginManifest(), zipFile, moduleFinder, logger),
+			null,
+			moduleFinder
+		);
+	}
+
+
+	/*
+	 * Zip files that cannot be mapped (i.e. ZIP64 archives) are extracted instead
+	 */
+	private Optional<MappedZip> mapZipFile(PluginZipFile zipFile) {
+		try {
+			return Optional.of(MappedZip.open(zipFile.path()));
+		} catch (IOException e) {
+			logger.debug("plugin file {} cannot be read in place: {}", zipFile.path(), e.getMessage());
+			return Optional.empty();
+		}
+	}
+
+
+	private Path extract(PluginZipFile zipFile) throws IOException {
+		if (extractionCache != null) {
+			return extractionCache.extract(zipFile);
+		}
+		Path temporaryPath = Files.createTempDirectory("jexten-plugin");
+		zipFile.unzip(temporaryPath);
+		logger.debug("plugin {} unzipped in {}", zipFile.pluginID(), temporaryPath);
+		return temporaryPath;
+	}
+
+
+	/*
+	 * The same file may have been read again meanwhile (i.e. modified and then
+	 * restored), reusing the same extraction
+	 */
+	private void removeExtraction(CachedPlugin evicted) {
+		if (evicted.extractionPath == null || extractionPaths().contains(evicted.extractionPath)) {
+			return;
+		}
+		ExtractionCache.delete(evicted.extractionPath, logger);
+	}
+
 }
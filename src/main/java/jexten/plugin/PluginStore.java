@@ -3,16 +3,19 @@
 package jexten.plugin;
 
 import java.io.IOException;
+import java.lang.invoke.*;
 import java.nio.file.*;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import java.util.stream.*;
 import jexten.*;
-import jexten.internal.Lazy;
 import jexten.plugin.tree.ModuleLayerTree;
 import org.slf4j.Logger;
 
 
-public class PluginStore implements ModuleLayerProvider {
+public class PluginStore implements ModuleLayerProvider, AutoCloseable {
 
 
 
@@ -24,13 +27,17 @@ public class PluginStore implements ModuleLayerProvider {
 	}
 
 
-	private record PluginModuleLayer(Plugin plugin, ModuleLayer moduleLayer) { }
+	private record PendingPlugin(Path path, CompletableFuture<Optional<Plugin>> plugin) { }
 
 
+	/*
+	 * Immutable snapshot of the plugins, numbered after the generation of the
+	 * warehouse it reflects
+	 */
 	private record PluginMap (
+		long generation,
 		Map<PluginID, Plugin> pluginsByID,
-		Map<Plugin,ModuleLayer> layersByPlugin,
-		ModuleLayerTree layerTree
+		PluginActivation activation
 	) {
 		public Optional<Plugin> get(PluginID id) {
 			return Optional.ofNullable(pluginsByID.get(id));
@@ -44,16 +51,36 @@ public class PluginStore implements ModuleLayerProvider {
 	}
 
 
-	private static final ModuleLayer bootLayer = ModuleLayer.boot();
+	// folder within the warehouse where the plugin files are extracted
+	private static final String EXTRACTION_FOLDER = ".extracted";
+	// time to wait before retrying a failed rebuild started in background
+	private static final Duration REBUILD_RETRY_DELAY = Duration.ofSeconds(5);
 
 	private final ClassLoader parentClassLoader;
 	private final String applicationModule;
 	private final Path storePath;
 	private final Logger logger;
 	private final PluginReader pluginReader;
+	private final ExtractionCache extractionCache;
+	private final WarehouseCatalog catalog;
 	private final ArtifactResolver artifactResolver;
-
-	private final Lazy<PluginMap,PluginException> pluginMap = Lazy.of(this::buildPluginMap);
+	private final Executor executor;
+	// null unless the executor was created by the store itself, so it must be shut down
+	private final ExecutorService ownedExecutor;
+	private final int updateParallelism;
+	private final boolean lazyActivation;
+	private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+	// null unless the warehouse is watched
+	private final WarehouseWatcher warehouseWatcher;
+
+	// the last plugin map built, also used as baseline when the plugins change
+	private final AtomicReference<PluginMap> currentPluginMap = new AtomicReference<>();
+	// increased each time the plugins change, so the current plugin map becomes outdated
+	private final AtomicLong warehouseGeneration = new AtomicLong(1);
+	// the rebuild in progress, if any, so it is shared by every thread requiring it
+	private final AtomicReference<CompletableFuture<PluginMap>> pendingRebuild = new AtomicReference<>();
+	// System.nanoTime() before which no rebuild is started in background after a failure
+	private volatile long rebuildRetryTime = System.nanoTime();
 
 
 	/*
@@ -64,14 +91,62 @@ public class PluginStore implements ModuleLayerProvider {
 		String application,
 		Path storePath,
 		Logger logger,
-		ArtifactResolver artifactResolver
+		ArtifactResolver artifactResolver,
+		Executor executor,
+		Duration watchDebounce,
+		int maxCachedPlugins,
+		Duration maxCachedPluginAge,
+		int updateParallelism,
+		boolean lazyActivation
 	) {
 		this.parentClassLoader = parentClassLoader;
 		this.applicationModule = application;
 		this.storePath = createStoreFolder(logger, storePath);
 		this.logger = logger;
 		this.artifactResolver = artifactResolver;
-		this.pluginReader = new PluginReader(logger);
+		this.ownedExecutor = executor == null ? defaultExecutor() : null;
+		this.executor = executor == null ? ownedExecutor : executor;
+		this.updateParallelism = updateParallelism;
+		this.lazyActivation = lazyActivation;
+		this.extractionCache = new ExtractionCache(this.storePath.resolve(EXTRACTION_FOLDER), logger);
+		this.pluginReader = new PluginReader(logger, extractionCache, maxCachedPlugins, maxCachedPluginAge);
+		this.catalog = WarehouseCatalog.load(this.storePath, logger);
+		this.warehouseWatcher = watchDebounce == null ? null :
+			new WarehouseWatcher(this.storePath, watchDebounce, logger, this::invalidateCachedPlugins);
+	}
+
+
+	/*
+	  The watcher is started once the store is fully constructed, so no file event
+	  is handled by a partially published store. Meant to be used only by PluginStoreBuilder
+	*/
+	PluginStore start() {
+		if (warehouseWatcher != null) {
+			warehouseWatcher.start();
+		}
+		return this;
+	}
+
+
+	/*
+	 * The library targets Java 17, so virtual threads (Java 21+) can only be
+	 * used when available at runtime
+	 */
+	static ExecutorService defaultExecutor() {
+		try {
+			var factory = MethodHandles.publicLookup().findStatic(
+				Executors.class,
+				"newVirtualThreadPerTaskExecutor",
+				MethodType.methodType(ExecutorService.class)
+			);
+			return (ExecutorService) factory.invoke();
+		} catch (Throwable e) {
+			return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+				var thread = new Thread(task, "jexten-plugin-reader");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
 	}
 
 
@@ -90,12 +165,32 @@ public class PluginStore implements ModuleLayerProvider {
 
 	@Override
 	public Stream<ModuleLayer> moduleLayers() {
-		return pluginMap.get().layersByPlugin.values().stream();
+		return pluginMap().activation().activateAll().values().stream();
+	}
+
+
+	/**
+	 * Provide only the module layers of the plugins that provide the given
+	 * extension point, according to their manifest and module descriptors. When
+	 * the store uses lazy activation, this is the moment when such plugins are
+	 * actually activated.
+	 * <p>
+	 * The boot layer is provided if no plugin provides the extension point, since
+	 * it would be reachable from any plugin layer otherwise.
+	 */
+	@Override
+	public Stream<ModuleLayer> moduleLayers(Class<?> extensionPoint) {
+		var activation = pluginMap().activation();
+		var layers = activation.activateFor(extensionPoint);
+		if (layers.isEmpty() && activation.hasPlugins()) {
+			return Stream.of(ModuleLayer.boot());
+		}
+		return layers.values().stream();
 	}
 
 
 	public Stream<Plugin> plugins() {
-		return pluginMap.get().pluginsByID.values().stream();
+		return pluginMap().pluginsByID.values().stream();
 	}
 
 
@@ -104,18 +199,70 @@ public class PluginStore implements ModuleLayerProvider {
 	 * regarding the different plugins allocated
 	 */
 	public ModuleLayerTree moduleLayerTree() {
-		return this.pluginMap.get().layerTree;
+		return pluginMap().activation().layerTree();
 	}
 
 
 	public Map<Plugin,ModuleLayer> moduleLayersByPlugin() {
-		return this.pluginMap.get().layersByPlugin;
+		return pluginMap().activation().activateAll();
+	}
+
+
+	Map<Plugin,ModuleLayer> moduleLayersByPlugin(Class<?> extensionPoint) {
+		return pluginMap().activation().activateFor(extensionPoint);
+	}
+
+
+	/**
+	 * @return The plugins providing each extension point, keyed by the name of the
+	 * extension point. Plugins are not activated in order to build the index.
+	 */
+	public Map<String,List<Plugin>> extensionPointIndex() {
+		return pluginMap().activation().extensionPointIndex();
+	}
+
+
+	/**
+	 * Register a listener that will be notified each time the plugins of the
+	 * warehouse change, either by means of this store or, if the warehouse is
+	 * watched, by any other process
+	 */
+	@Override
+	public void addChangeListener(Runnable listener) {
+		changeListeners.add(Objects.requireNonNull(listener, "listener cannot be null"));
+	}
+
+
+	/**
+	 * @return The generation of the plugins currently provided, which increases each
+	 *         time the plugins of the warehouse change
+	 */
+	@Override
+	public long version() {
+		var current = currentPluginMap.get();
+		return current == null ? 0L : current.generation();
+	}
+
+
+	/**
+	 * Stop watching the warehouse folder, if it was watched, and shut down the
+	 * default executor. Executors set via {@link PluginStoreBuilder#executor(Executor)}
+	 * are owned by the caller, so they are left running.
+	 */
+	@Override
+	public void close() {
+		if (warehouseWatcher != null) {
+			warehouseWatcher.close();
+		}
+		if (ownedExecutor != null) {
+			ownedExecutor.shutdown();
+		}
 	}
 
 
 
 	public void removePlugin(PluginID pluginID) {
-		var plugin = pluginMap.get().get(pluginID).orElseThrow(
+		var plugin = pluginMap().get(pluginID).orElseThrow(
 			()->new PluginException("Plugin {} is not present", pluginID)
 		);
 		try {
@@ -142,7 +289,7 @@ public class PluginStore implements ModuleLayerProvider {
 		if (artifactResolver == null) {
 			throw new PluginException("There is no artifact resolver configured");
 		}
-		Version current = pluginMap.get().getVersion(pluginID).orElse(null);
+		Version current = pluginMap().getVersion(pluginID).orElse(null);
 		Version latest = artifactResolver.latestVersion(pluginID)
 			.orElseThrow(()->new PluginException("Cannot found latest version of {}", pluginID));
 
@@ -184,17 +331,120 @@ public class PluginStore implements ModuleLayerProvider {
 
 
 	/**
-	 * Update all the plugins existing in the warehouse
+	 * Update all the plugins existing in the warehouse.
+	 * <p>
+	 * The latest versions of every plugin are resolved at once, and then the
+	 * outdated plugins are fetched concurrently (up to the configured update
+	 * parallelism) into a staging folder. Once every fetch has finished, the new
+	 * plugin files replace the previous ones and the plugins are reloaded just once.
+	 * A plugin that cannot be updated does not prevent the others from being updated.
 	 */
 	public void updatePlugins() {
-		for (var pluginID : pluginMap.get().ids()) {
+		if (artifactResolver == null) {
+			throw new PluginException("There is no artifact resolver configured");
+		}
+		var currentPlugins = pluginMap().pluginsByID();
+		if (currentPlugins.isEmpty()) {
+			return;
+		}
+		var latestVersions = latestVersions(currentPlugins.keySet());
+		var outdatedPlugins = currentPlugins.values().stream()
+			.filter(plugin -> latestVersions.containsKey(plugin.id()))
+			.filter(plugin -> latestVersions.get(plugin.id()).compareTo(plugin.version()) > 0)
+			.toList();
+		if (outdatedPlugins.isEmpty()) {
+			logger.info("Every plugin is up to date");
+			return;
+		}
+		Path stagingFolder = createStagingFolder();
+		// fetching is I/O bound, so it does not share the executor used to read plugins
+		var fetchExecutor = Executors.newFixedThreadPool(updateParallelism, task -> {
+			var thread = new Thread(task, "jexten-plugin-update");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			var pendingUpdates = outdatedPlugins.stream()
+				.map(plugin -> CompletableFuture.supplyAsync(
+					() -> stagePluginUpdate(plugin.id().version(latestVersions.get(plugin.id())), stagingFolder),
+					fetchExecutor
+				))
+				.toList();
+			List<Path> stagedFiles = new ArrayList<>();
+			for (int i = 0; i < outdatedPlugins.size(); i++) {
+				var plugin = outdatedPlugins.get(i);
+				try {
+					var stagedFile = pendingUpdates.get(i).join();
+					commitPluginUpdate(plugin, stagedFile, latestVersions.get(plugin.id()));
+					stagedFiles.add(stagedFile);
+				} catch (CompletionException | PluginException e) {
+					var cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+					logger.error("Problem updating plugin {}: {}", plugin.id(), cause.getMessage());
+					logger.debug("", cause);
+				}
+			}
+			if (!stagedFiles.isEmpty()) {
+				invalidateCachedPlugins();
+			}
+		} finally {
+			fetchExecutor.shutdownNow();
+			ExtractionCache.delete(stagingFolder, logger);
+		}
+	}
+
+
+	/*
+	 * All versions are requested at once; if that is not possible (i.e. any of
+	 * the plugins cannot be resolved) they are requested one by one
+	 */
+	private Map<PluginID,Version> latestVersions(Collection<PluginID> pluginIDs) {
+		try {
+			return artifactResolver.latestVersions(pluginIDs);
+		} catch (RuntimeException e) {
+			logger.warn("Cannot resolve the plugins at once, resolving them one by one: {}", e.getMessage());
+			logger.debug("", e);
+		}
+		Map<PluginID,Version> versions = new HashMap<>();
+		for (var pluginID : pluginIDs) {
 			try {
-				updatePlugin(pluginID);
+				artifactResolver.latestVersion(pluginID).ifPresent(version -> versions.put(pluginID, version));
 			} catch (RuntimeException e) {
-				logger.error("Problem updating plugin {}: {}", pluginID, e.getMessage());
-				logger.debug("",e);
+				logger.error("Cannot resolve latest version of plugin {}: {}", pluginID, e.getMessage());
+				logger.debug("", e);
 			}
 		}
+		return versions;
+	}
+
+
+	private Path stagePluginUpdate(ArtifactID requestedID, Path stagingFolder) {
+		logger.info("Fetching plugin {} ...", requestedID);
+		return createPluginZipFile(requestedID, stagingFolder).path();
+	}
+
+
+	private void commitPluginUpdate(Plugin plugin, Path stagedFile, Version version) {
+		Path previousFile = plugin.zipFile().path();
+		Path newFile = storePath.resolve(stagedFile.getFileName());
+		try {
+			Files.move(stagedFile, newFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			if (!previousFile.equals(newFile)) {
+				Files.deleteIfExists(previousFile);
+			}
+			logger.info("Updated plugin {} from version {} to {}", plugin.id(), plugin.version(), version);
+		} catch (IOException e) {
+			throw new PluginException(e, "Cannot replace plugin file {}", previousFile);
+		}
+	}
+
+
+	// hidden, so it is ignored when reading the warehouse
+	private Path createStagingFolder() {
+		try {
+			return Files.createTempDirectory(storePath, ".update-");
+		} catch (IOException e) {
+			throw new PluginException(e, "Cannot create staging folder in {}", storePath);
+		}
 	}
 
 
@@ -210,7 +460,7 @@ public class PluginStore implements ModuleLayerProvider {
 		if (artifactResolver == null) {
 			throw new PluginException("There is no artifact resolver configured");
 		}
-		Version current = pluginMap.get().getVersion(pluginID).orElseThrow(
+		Version current = pluginMap().getVersion(pluginID).orElseThrow(
 			()->new PluginException("Plugin {} is not present", pluginID)
 		);
 		Version latest = artifactResolver.latestVersion(pluginID)
@@ -226,6 +476,11 @@ public class PluginStore implements ModuleLayerProvider {
 
 
 	private void resolveArtifact(ArtifactID requestedID) {
+		installPluginFromZipFile(createPluginZipFile(requestedID, storePath).path());
+	}
+
+
+	private PluginZipFile createPluginZipFile(ArtifactID requestedID, Path folder) {
 		var artifacts = artifactResolver.resolveArtifact(requestedID).toList();
 		var mainArtifact = artifacts.stream()
 			.filter(it -> it.artifactID().equals(requestedID))
@@ -239,9 +494,8 @@ public class PluginStore implements ModuleLayerProvider {
 			.map(ArtifactResolver.ArtifactPath::path)
 			.toList();
 
-		Path zipFilePath = storePath.resolve(requestedID.name()+".zip");
-		var pluginZipFile = PluginZipFile.create(zipFilePath,mainArtifact,dependencies);
-		installPluginFromZipFile(pluginZipFile.path());
+		Path zipFilePath = folder.resolve(requestedID.name()+".zip");
+		return PluginZipFile.create(zipFilePath,mainArtifact,dependencies,true);
 	}
 
 
@@ -264,7 +518,7 @@ public class PluginStore implements ModuleLayerProvider {
 			.map(ArtifactResolver.ArtifactPath::path)
 			.toList();
 		Path zipFilePath = storePath.resolve(pluginManifest.id().name()+"-"+pluginManifest.version()+".zip");
-		var pluginZipFile = PluginZipFile.create(zipFilePath,path,dependencies);
+		var pluginZipFile = PluginZipFile.create(zipFilePath,path,dependencies,true);
 		installPluginFromZipFile(pluginZipFile.path());
 	}
 
@@ -288,37 +542,223 @@ public class PluginStore implements ModuleLayerProvider {
 
 
 
-	private PluginMap buildPluginMap() {
-		logger.debug("building plugin map...");
-		try (var storeContents = Files.list(storePath)) {
+	/*
+	 * Readers never wait for a rebuild once a plugin map exists: if it is outdated,
+	 * a rebuild is started in background and the current one is returned meanwhile.
+	 * After a failed rebuild, readers keep the current map for a while instead of
+	 * retrying right away.
+	 */
+	private PluginMap pluginMap() {
+		var current = currentPluginMap.get();
+		if (current == null) {
+			return awaitPluginMap(warehouseGeneration.get());
+		}
+		if (current.generation() < warehouseGeneration.get() && System.nanoTime() - rebuildRetryTime >= 0) {
+			rebuildInBackground();
+		}
+		return current;
+	}
 
-			var pluginArtifacts = storeContents
-				.map(this::readPluginZipFile)
-				.flatMap(Optional::stream)
-				.map(pluginReader::readPlugin)
-				.flatMap(Optional::stream)
-				.filter(this::validatePluginApplication)
-				.collect(Collectors.toUnmodifiableMap(Plugin::artifactID, x->x));
 
-			var layersByPlugin = computeModuleLayers(pluginArtifacts.values());
-			var layerTree = new ModuleLayerTree(layersByPlugin);
+	private PluginMap awaitPluginMap(long generation) {
+		while (true) {
+			var current = currentPluginMap.get();
+			if (current != null && current.generation() >= generation) {
+				return current;
+			}
+			try {
+				startRebuild().join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof Error error) {
+					throw error;
+				}
+				throw PluginException.wrapper((Exception) e.getCause());
+			}
+		}
+	}
 
-			var pluginsByID = pluginArtifacts.values().stream()
-				.collect(Collectors.toMap(Plugin::id,it->it));
 
-			logger.debug("plugin map finished, {} plugins available", pluginArtifacts.size());
-			return new PluginMap(pluginsByID, layersByPlugin, layerTree);
+	private void rebuildInBackground() {
+		startRebuild().exceptionally(e -> {
+			logger.error("Cannot rebuild the plugin map: {}", e.getMessage());
+			logger.debug("", e);
+			return null;
+		});
+	}
 
+
+	/*
+	 * Only one rebuild is running at a time: it is started only by the thread that
+	 * registers it as pending, while any other thread simply joins it. Every step
+	 * of the rebuild runs on the store executor, so the thread starting it does
+	 * not have to wait for it.
+	 */
+	private CompletableFuture<PluginMap> startRebuild() {
+		var rebuild = new CompletableFuture<PluginMap>();
+		var running = pendingRebuild.compareAndExchange(null, rebuild);
+		if (running != null) {
+			return running;
+		}
+		CompletableFuture<PluginMap> pluginMap;
+		try {
+			pluginMap = buildPluginMap(warehouseGeneration.get());
+		} catch (RuntimeException | Error e) {
+			// i.e. the executor has been shut down
+			pluginMap = CompletableFuture.failedFuture(e);
+		}
+		pluginMap.whenComplete((result, e) -> {
+			if (e == null) {
+				currentPluginMap.set(result);
+			} else {
+				// set before the rebuild is no longer pending, so readers do not retry meanwhile
+				rebuildRetryTime = System.nanoTime() + REBUILD_RETRY_DELAY.toNanos();
+			}
+			pendingRebuild.set(null);
+			if (e == null) {
+				rebuild.complete(result);
+			} else {
+				rebuild.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+			}
+		});
+		return rebuild;
+	}
+
+
+	private CompletableFuture<PluginMap> buildPluginMap(long generation) {
+		logger.debug("building plugin map...");
+		return CompletableFuture.supplyAsync(this::listPluginFiles, executor).thenCompose(pluginFiles -> {
+			// each plugin file is read, unzipped and scanned concurrently, but the
+			// results are merged following the file order, regardless of completion order
+			var pendingPlugins = pluginFiles.stream()
+				.map(path -> new PendingPlugin(path, CompletableFuture.supplyAsync(
+					() -> readPlugin(path),
+					this::execute
+				)))
+				.toList();
+			return CompletableFuture.allOf(pendingPlugins.stream().map(PendingPlugin::plugin).toArray(CompletableFuture<?>[]::new))
+				.handle((done, e) -> activatePlugins(generation, pluginFiles, pendingPlugins))
+				.thenCompose(pluginMap -> lazyActivation ?
+					CompletableFuture.completedFuture(pluginMap) :
+					pluginMap.activation().activateAllAsync().thenApply(layers -> pluginMap)
+				);
+		});
+	}
+
+
+	/*
+	 * Tasks rejected because the executor has been shut down meanwhile are run by the
+	 * submitting thread, so no rebuild or activation is left incomplete
+	 */
+	private void execute(Runnable task) {
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			task.run();
+		}
+	}
+
+
+	/*
+	 * Hidden files are kept by the store itself; the catalog files are excluded
+	 * explicitly, so they are never read as plugins
+	 */
+	private List<Path> listPluginFiles() {
+		try (var storeContents = Files.list(storePath)) {
+			return storeContents
+				.filter(Files::isRegularFile)
+				.filter(path -> !WarehouseCatalog.isCatalogFile(path))
+				.filter(path -> !path.getFileName().toString().startsWith("."))
+				.sorted()
+				.toList();
 		} catch (IOException e) {
 			throw PluginException.wrapper(e);
 		}
 	}
 
 
+	private PluginMap activatePlugins(long generation, List<Path> pluginFiles, List<PendingPlugin> pendingPlugins) {
+		var pluginArtifacts = pendingPlugins.stream()
+			.map(this::awaitPlugin)
+			.flatMap(Optional::stream)
+			.filter(this::validatePluginApplication)
+			.collect(Collectors.toUnmodifiableMap(Plugin::artifactID, x->x));
+		pluginReader.evict(pluginArtifacts.values());
+		extractionCache.retain(pluginFiles, pluginReader.extractionPaths());
+		catalog.retain(pluginFiles);
+		catalog.save();
+
+		var previous = currentPluginMap.get();
+		var activation = new PluginActivation(
+			pluginArtifacts.values(),
+			previous == null ? null : previous.activation(),
+			parentClassLoader,
+			this::execute,
+			logger
+		);
+
+		var pluginsByID = pluginArtifacts.values().stream()
+			.collect(Collectors.toMap(Plugin::id,it->it));
+
+		logger.debug("plugin map finished, {} plugins available", pluginArtifacts.size());
+		return new PluginMap(generation, pluginsByID, activation);
+	}
+
+
+
+	private Optional<Plugin> awaitPlugin(PendingPlugin pendingPlugin) {
+		try {
+			return pendingPlugin.plugin().join();
+		} catch (CompletionException | CancellationException e) {
+			var cause = e.getCause() == null ? e : e.getCause();
+			logger.error("Cannot read plugin file {}: {}", pendingPlugin.path(), cause.getMessage());
+			logger.debug("", cause);
+			return Optional.empty();
+		}
+	}
+
 
+	/*
+	 * The changes are applied eagerly, so both the caller and the listeners
+	 * get the new plugins right away
+	 */
 	private void invalidateCachedPlugins() {
 		logger.debug("plugin cache invalidated due to plugins were added/removed");
-		this.pluginMap.reset();
+		awaitPluginMap(warehouseGeneration.incrementAndGet());
+		notifyChangeListeners();
+	}
+
+
+	private void notifyChangeListeners() {
+		for (Runnable listener : changeListeners) {
+			try {
+				listener.run();
+			} catch (RuntimeException e) {
+				logger.error("Error notifying plugin changes: {}", e.getMessage());
+				logger.debug("", e);
+			}
+		}
+	}
+
+
+	/*
+	 * Unchanged plugin files are restored from the catalog, so they are not scanned
+	 * again; any other file is read and added to the catalog
+	 */
+	private Optional<Plugin> readPlugin(Path path) {
+		var catalogued = catalog.find(path).flatMap(entry -> {
+			try {
+				return pluginReader.readPlugin(PluginZipFile.of(path, entry.manifest()), entry.descriptors());
+			} catch (PluginException e) {
+				logger.debug("", e);
+				return Optional.empty();
+			}
+		});
+		if (catalogued.isPresent()) {
+			return catalogued;
+		}
+		var plugin = readPluginZipFile(path).flatMap(pluginReader::readPlugin);
+		plugin.ifPresent(it -> catalog.put(path, it));
+		return plugin;
 	}
 
 
@@ -350,45 +790,6 @@ public class PluginStore implements ModuleLayerProvider {
 
 
 
-	private Map<Plugin,ModuleLayer> computeModuleLayers(Collection<Plugin> plugins) {
-		var layersByPlugin = new HashMap<Plugin,ModuleLayer>();
-		Set<ModuleLayer> exploredLayers = new HashSet<>();
-		ModuleLayer parentLayer = bootLayer;
-		Map<Plugin,ModuleLayer> newLayers;
-		do {
-			newLayers = computeModuleLayers(parentLayer,plugins);
-			exploredLayers.add(parentLayer);
-			layersByPlugin.putAll(newLayers);
-			parentLayer = layersByPlugin.values().stream()
-				.filter(it -> !exploredLayers.contains(it))
-				.findAny()
-				.orElse(null);
-		} while (parentLayer != null);
-		return Map.copyOf(layersByPlugin);
-	}
-
-
-
-	private Map<Plugin,ModuleLayer> computeModuleLayers(
-		ModuleLayer parentLayer,
-		Collection<Plugin> plugins
-	) {
-		return plugins.stream()
-		.filter(plugin -> plugin.isHostedBy(parentLayer))
-		.map(plugin -> buildModuleLayer(plugin, parentLayer))
-		.flatMap(Optional::stream)
-		.collect(Collectors.toMap(PluginModuleLayer::plugin, PluginModuleLayer::moduleLayer));
-	}
-
-
-	private Optional<PluginModuleLayer> buildModuleLayer(Plugin plugin, ModuleLayer parentLayer) {
-		return plugin
-			.buildModuleLayer(parentLayer, parentClassLoader)
-			.map(moduleLayer -> new PluginModuleLayer(plugin, moduleLayer));
-	}
-
-
-
 
 
 
@@ -3,7 +3,9 @@
 package jexten.plugin;
 
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 import java.util.function.Predicate;
 
 import org.slf4j.*;
@@ -16,6 +18,12 @@ public class PluginStoreBuilder {
     private Path warehousePath;
     private Logger logger;
     private ArtifactResolver artifactResolver;
+    private Executor executor;
+    private Duration watchDebounce;
+    private int maxCachedPlugins = PluginReader.DEFAULT_CACHE_SIZE;
+    private Duration maxCachedPluginAge = PluginReader.DEFAULT_CACHE_AGE;
+    private int updateParallelism = 4;
+    private boolean lazyActivation;
 
 
     public PluginStoreBuilder module(Module module) {
@@ -67,6 +75,81 @@ public class PluginStoreBuilder {
     }
 
 
+    /**
+     * Set the executor used to read the plugins of the warehouse in parallel.
+     * If not set, virtual threads are used when the Java runtime supports them,
+     * or a pool of daemon threads sized by the available processors otherwise;
+     * such default executor is shut down when the store is closed, while the
+     * given one is not.
+     */
+    public PluginStoreBuilder executor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+
+    /**
+     * Watch the warehouse folder, reloading the plugins whenever a plugin file is
+     * added, replaced or removed by any process. Changes are applied once no file
+     * event has been received for the given period and every changed file is
+     * complete, so copying several files results in a single reload.
+     * The watcher is stopped when the store is closed.
+     * @param debounce The period to wait for further changes, at least one millisecond
+     */
+    public PluginStoreBuilder watchWarehouse(Duration debounce) {
+        if (debounce == null || debounce.toMillis() <= 0) {
+            throw new PluginException("Watch debounce period must be at least one millisecond");
+        }
+        this.watchDebounce = debounce;
+        return this;
+    }
+
+
+    /**
+     * Set the limits of the cache of plugins read by the store. Plugins whose file
+     * has been removed or replaced (i.e. previous versions) are evicted from the
+     * cache, and their extracted files removed, right away. Any other plugin not in
+     * use (i.e. aimed to another application) is evicted when it has not been used
+     * for the given age or when the cache exceeds the given size. Plugins currently
+     * in use are never evicted.
+     * If not set, up to {@value PluginReader#DEFAULT_CACHE_SIZE} plugins are kept for
+     * at most 30 minutes.
+     */
+    public PluginStoreBuilder pluginCache(int maxSize, Duration maxAge) {
+        if (maxSize < 0 || maxAge == null || maxAge.isNegative()) {
+            throw new PluginException("Plugin cache limits must be non-negative");
+        }
+        this.maxCachedPlugins = maxSize;
+        this.maxCachedPluginAge = maxAge;
+        return this;
+    }
+
+
+    /**
+     * Set the maximum number of plugins fetched at the same time when updating
+     * every plugin (see {@link PluginStore#updatePlugins()}). By default, 4.
+     */
+    public PluginStoreBuilder updateParallelism(int updateParallelism) {
+        if (updateParallelism < 1) {
+            throw new PluginException("Update parallelism must be at least 1");
+        }
+        this.updateParallelism = updateParallelism;
+        return this;
+    }
+
+
+    /**
+     * Define the module layer of each plugin only when an extension point that the
+     * plugin (or any plugin hosted by it) provides is requested,
+     * instead of defining the layers of every plugin up front. Requesting every
+     * module layer, or the module layer tree, still activates all the plugins.
+     */
+    public PluginStoreBuilder lazyActivation(boolean lazyActivation) {
+        this.lazyActivation = lazyActivation;
+        return this;
+    }
+
+
     public PluginStore build() {
         logger = Objects.requireNonNullElseGet(logger, ()->LoggerFactory.getLogger(application));
         return new PluginStore(
@@ -74,8 +157,14 @@ public class PluginStoreBuilder {
             Objects.requireNonNull(application, "application cannot be null"),
             Objects.requireNonNull(warehousePath, "location cannot be null"),
             logger,
-            artifactResolver
-        );
+            artifactResolver,
+            executor,
+            watchDebounce,
+            maxCachedPlugins,
+            maxCachedPluginAge,
+            updateParallelism,
+            lazyActivation
+        ).start();
     }
 
 }
@@ -28,11 +28,42 @@ public class PluginZipFile {
 
 
 	public static PluginZipFile create(Path path, Path mainArtifact, List<Path> dependencies) {
-		return new PluginZipFile(path).create(mainArtifact,dependencies);
+		return create(path, mainArtifact, dependencies, false);
 	}
 
+
+	/**
+	 * Create a new plugin file with the given artifacts.
+	 * @param stored Whether the jar files should be stored without compression. Stored
+	 *               jar files can be read without extracting them, at the cost of a
+	 *               slightly bigger plugin file (jar files are already compressed).
+	 */
+	public static PluginZipFile create(
+		Path path,
+		Path mainArtifact,
+		List<Path> dependencies,
+		boolean stored
+	) {
+		return new PluginZipFile(path).create(mainArtifact,dependencies,stored);
+	}
+
+	/*
+	 * Restore a plugin file whose manifest properties are already known, without
+	 * opening it
+	 */
+	static PluginZipFile of(Path path, Map<String,String> manifestProperties) {
+		var properties = new Properties();
+		properties.putAll(manifestProperties);
+		var zipFile = new PluginZipFile(path);
+		zipFile.manifestProperties = Map.copyOf(manifestProperties);
+		zipFile.pluginManifest = manifestOf(properties);
+		return zipFile;
+	}
+
+
 	private final Path path;
 	private PluginManifest pluginManifest;
+	private Map<String,String> manifestProperties;
 
 
 	private PluginZipFile(Path path) {
@@ -41,23 +72,35 @@ public class PluginZipFile {
 
 
 	private PluginZipFile read() {
-		this.pluginManifest = locatePluginManifest(path);
+		var properties = locatePluginManifest(path);
+		Map<String,String> map = new LinkedHashMap<>();
+		properties.stringPropertyNames().forEach(key -> map.put(key, properties.getProperty(key)));
+		this.manifestProperties = Collections.unmodifiableMap(map);
+		this.pluginManifest = manifestOf(properties);
 		return this;
 	}
 
 
-	private PluginZipFile create(Path mainArtifact, List<Path> dependencies) {
+	private static PluginManifest manifestOf(Properties properties) {
+		try {
+			return PluginManifest.of(properties);
+		} catch (RuntimeException e) {
+			throw PluginException.wrapper(e);
+		}
+	}
+
+
+	private PluginZipFile create(Path mainArtifact, List<Path> dependencies, boolean stored) {
 		this.pluginManifest = readPluginManifestFromJar(mainArtifact);
+		this.manifestProperties = pluginManifest.asMap();
 		try (var output = new ZipOutputStream(new FileOutputStream(path.toFile()))) {
 			output.putNextEntry(new ZipEntry(PLUGIN_PROPERTIES_FILE));
 			for (var e : pluginManifest.asMap().entrySet()) {
 				writeLine(output, e.getKey()+": "+e.getValue());
 			}
-			output.putNextEntry(new ZipEntry(mainArtifact.toFile().getName()));
-			Files.copy(mainArtifact, output);
+			writeArtifact(output, mainArtifact, stored);
 			for (Path dependency : dependencies) {
-				output.putNextEntry(new ZipEntry(dependency.toFile().getName()));
-				Files.copy(dependency, output);
+				writeArtifact(output, dependency, stored);
 			}
 			return this;
 		} catch (IOException | RuntimeException e) {
@@ -124,7 +167,15 @@ public class PluginZipFile {
 	}
 
 
-	private static PluginManifest locatePluginManifest(Path path) {
+	/**
+	 * @return The properties of the plugin manifest, as present in the file
+	 */
+	Map<String,String> manifestProperties() {
+		return manifestProperties;
+	}
+
+
+	private static Properties locatePluginManifest(Path path) {
 		try (ZipFile file = new ZipFile(path.toFile())) {
 
 			var pluginManifestZipEntry = file
@@ -137,7 +188,7 @@ public class PluginZipFile {
 			try (var entryInputStream = file.getInputStream(pluginManifestZipEntry)) {
 				var properties = new Properties();
 				properties.load(entryInputStream);
-				return PluginManifest.of(properties);
+				return properties;
 			}
 
 		} catch (IOException | RuntimeException e) {
@@ -151,6 +202,24 @@ public class PluginZipFile {
 	}
 
 
+	private static void writeArtifact(ZipOutputStream output, Path artifact, boolean stored) throws IOException {
+		var entry = new ZipEntry(artifact.toFile().getName());
+		if (stored) {
+			// stored entries require the size and checksum before writing the content
+			var checksum = new CRC32();
+			try (var input = new CheckedInputStream(Files.newInputStream(artifact), checksum)) {
+				input.transferTo(OutputStream.nullOutputStream());
+			}
+			entry.setMethod(ZipEntry.STORED);
+			entry.setSize(Files.size(artifact));
+			entry.setCompressedSize(Files.size(artifact));
+			entry.setCrc(checksum.getValue());
+		}
+		output.putNextEntry(entry);
+		Files.copy(artifact, output);
+	}
+
+
 	private static void writeLine(ZipOutputStream output, String string) throws IOException {
 		byte[] data = (string+"\n").getBytes(StandardCharsets.UTF_8);
 		output.write(data);
@@ -0,0 +1,439 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.plugin;
+
+import java.io.*;
+import java.lang.module.ModuleDescriptor;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.*;
+import org.slf4j.Logger;
+
+
+/**
+ * Compact catalog of the plugin files of a warehouse, kept in the warehouse
+ * folder itself.
+ * <p>
+ * For each plugin file it records the size, last modification time and content
+ * hash of the file, along with the properties of its plugin manifest, the jar files
+ * within and the descriptors of their modules. As long as a plugin file is
+ * unchanged, it can be loaded from the catalog without scanning the zip file nor
+ * parsing any module descriptor.
+ * <p>
+ * A file whose size is unchanged but whose modification time is not (i.e. copied
+ * again) is still considered unchanged if the content hash matches. The catalog
+ * is discarded as a whole if it was written with a different format or by a
+ * different Java runtime version, since module descriptors of multi-release
+ * jar files depend on the runtime version.
+ */
+final class WarehouseCatalog {
+
+	static final String CATALOG_FILE = ".catalog";
+
+	private static final int MAGIC = 0x4A584354;
+	private static final int FORMAT_VERSION = 1;
+	private static final String HASH_ALGORITHM = "SHA-256";
+
+
+	/**
+	 * The catalogued information of a plugin file
+	 */
+	record Entry(
+		long size,
+		long lastModified,
+		byte[] hash,
+		Map<String,String> manifest,
+		List<String> jars,
+		Map<String,ModuleDescriptor> descriptors
+	) { }
+
+
+	private final Path file;
+	private final Logger logger;
+	private final Map<String,Entry> entries = new ConcurrentHashMap<>();
+	private volatile boolean modified;
+
+
+	private WarehouseCatalog(Path file, Logger logger) {
+		this.file = file;
+		this.logger = logger;
+	}
+
+
+	/**
+	 * @return <code>true</code> if the given file is the catalog file or a temporary
+	 *         file written while saving it, so it must not be read as a plugin file
+	 */
+	static boolean isCatalogFile(Path path) {
+		String name = path.getFileName().toString();
+		return name.equals(CATALOG_FILE) || (name.startsWith(CATALOG_FILE) && name.endsWith(".tmp"));
+	}
+
+
+	/**
+	 * Load the catalog of the given warehouse folder. Any problem reading the
+	 * catalog results in an empty one, so every plugin file is read again.
+	 */
+	static WarehouseCatalog load(Path folder, Logger logger) {
+		var catalog = new WarehouseCatalog(folder.resolve(CATALOG_FILE), logger);
+		if (Files.exists(catalog.file)) {
+			try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(catalog.file)))) {
+				catalog.read(input);
+			} catch (IOException | RuntimeException e) {
+				logger.warn("Plugin catalog {} cannot be used, plugins will be read again: {}", catalog.file, e.getMessage());
+				logger.debug("", e);
+				catalog.entries.clear();
+				catalog.modified = true;
+			}
+		}
+		return catalog;
+	}
+
+
+	/**
+	 * @return The catalogued information of the given plugin file, if it has not
+	 *         changed since it was catalogued
+	 */
+	Optional<Entry> find(Path pluginFile) {
+		var entry = entries.get(pluginFile.getFileName().toString());
+		if (entry == null) {
+			return Optional.empty();
+		}
+		try {
+			long size = Files.size(pluginFile);
+			long lastModified = Files.getLastModifiedTime(pluginFile).toMillis();
+			if (entry.size() != size) {
+				return Optional.empty();
+			}
+			if (entry.lastModified() == lastModified) {
+				return Optional.of(entry);
+			}
+			if (!Arrays.equals(entry.hash(), hash(pluginFile))) {
+				return Optional.empty();
+			}
+			var touched = new Entry(size, lastModified, entry.hash(), entry.manifest(), entry.jars(), entry.descriptors());
+			entries.put(pluginFile.getFileName().toString(), touched);
+			modified = true;
+			return Optional.of(touched);
+		} catch (IOException e) {
+			logger.debug("", e);
+			return Optional.empty();
+		}
+	}
+
+
+	/**
+	 * Catalog a plugin that has been read from the given plugin file
+	 */
+	void put(Path pluginFile, Plugin plugin) {
+		try {
+			var descriptors = plugin.nestedModuleDescriptors();
+			var jars = descriptors.isEmpty() ?
+				plugin.primaryPaths().stream().map(path -> path.getFileName().toString()).toList() :
+				List.copyOf(descriptors.keySet());
+			entries.put(pluginFile.getFileName().toString(), new Entry(
+				Files.size(pluginFile),
+				Files.getLastModifiedTime(pluginFile).toMillis(),
+				hash(pluginFile),
+				plugin.zipFile().manifestProperties(),
+				jars,
+				descriptors
+			));
+			modified = true;
+		} catch (IOException | RuntimeException e) {
+			logger.warn("Cannot catalog plugin file {}: {}", pluginFile, e.getMessage());
+			logger.debug("", e);
+		}
+	}
+
+
+	/**
+	 * Remove the entries of every plugin file not present anymore
+	 */
+	void retain(Collection<Path> pluginFiles) {
+		var fileNames = pluginFiles.stream().map(path -> path.getFileName().toString()).collect(Collectors.toSet());
+		if (entries.keySet().retainAll(fileNames)) {
+			modified = true;
+		}
+	}
+
+
+	/**
+	 * Write the catalog, if it has been modified. The catalog is written in a
+	 * temporary file that replaces the previous one once complete, so it is never
+	 * seen partially written.
+	 */
+	void save() {
+		if (!modified) {
+			return;
+		}
+		Path temporary = null;
+		try {
+			temporary = Files.createTempFile(file.getParent(), CATALOG_FILE, ".tmp");
+			try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+				write(output);
+			}
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			modified = false;
+			logger.debug("plugin catalog {} written with {} entries", file, entries.size());
+		} catch (IOException e) {
+			logger.warn("Cannot write plugin catalog {}: {}", file, e.getMessage());
+			logger.debug("", e);
+		} finally {
+			deleteIfExists(temporary);
+		}
+	}
+
+
+	private void deleteIfExists(Path temporary) {
+		if (temporary == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(temporary);
+		} catch (IOException e) {
+			logger.debug("", e);
+		}
+	}
+
+
+	private static byte[] hash(Path pluginFile) throws IOException {
+		try (var input = new DigestInputStream(Files.newInputStream(pluginFile), MessageDigest.getInstance(HASH_ALGORITHM))) {
+			input.transferTo(OutputStream.nullOutputStream());
+			return input.getMessageDigest().digest();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+
+
+	private void read(DataInputStream input) throws IOException {
+		if (input.readInt() != MAGIC) {
+			throw new IOException("not a plugin catalog");
+		}
+		int formatVersion = input.readInt();
+		int runtimeVersion = input.readInt();
+		if (formatVersion != FORMAT_VERSION || runtimeVersion != Runtime.version().feature()) {
+			throw new IOException("catalog written by another version");
+		}
+		int count = input.readInt();
+		for (int i = 0; i < count; i++) {
+			String fileName = readString(input);
+			long size = input.readLong();
+			long lastModified = input.readLong();
+			byte[] hash = input.readNBytes(input.readInt());
+			Map<String,String> manifest = new LinkedHashMap<>();
+			int properties = input.readInt();
+			for (int j = 0; j < properties; j++) {
+				manifest.put(readString(input), readString(input));
+			}
+			List<String> jars = readStrings(input);
+			Map<String,ModuleDescriptor> descriptors = new LinkedHashMap<>();
+			int modules = input.readInt();
+			for (int j = 0; j < modules; j++) {
+				descriptors.put(readString(input), readDescriptor(input));
+			}
+			entries.put(fileName, new Entry(
+				size,
+				lastModified,
+				hash,
+				Collections.unmodifiableMap(manifest),
+				jars,
+				Collections.unmodifiableMap(descriptors)
+			));
+		}
+	}
+
+
+	private void write(DataOutputStream output) throws IOException {
+		output.writeInt(MAGIC);
+		output.writeInt(FORMAT_VERSION);
+		output.writeInt(Runtime.version().feature());
+		var sortedEntries = new TreeMap<>(entries);
+		output.writeInt(sortedEntries.size());
+		for (var catalogued : sortedEntries.entrySet()) {
+			var entry = catalogued.getValue();
+			writeString(output, catalogued.getKey());
+			output.writeLong(entry.size());
+			output.writeLong(entry.lastModified());
+			output.writeInt(entry.hash().length);
+			output.write(entry.hash());
+			output.writeInt(entry.manifest().size());
+			for (var property : entry.manifest().entrySet()) {
+				writeString(output, property.getKey());
+				writeString(output, property.getValue());
+			}
+			writeStrings(output, entry.jars());
+			output.writeInt(entry.descriptors().size());
+			for (var descriptor : entry.descriptors().entrySet()) {
+				writeString(output, descriptor.getKey());
+				writeDescriptor(output, descriptor.getValue());
+			}
+		}
+	}
+
+
+
+	/*
+	 * Automatic modules cannot declare dependencies, exports nor opens, and open
+	 * modules cannot declare opens, so those parts are only written when allowed
+	 */
+	private static void writeDescriptor(DataOutputStream output, ModuleDescriptor descriptor) throws IOException {
+		writeString(output, descriptor.name());
+		writeStrings(output, descriptor.modifiers().stream().map(Enum::name).toList());
+		writeOptional(output, descriptor.version().map(Object::toString));
+		writeOptional(output, descriptor.mainClass());
+		writeStrings(output, descriptor.packages());
+		writeStrings(output, descriptor.uses());
+		output.writeInt(descriptor.provides().size());
+		for (var provides : descriptor.provides()) {
+			writeString(output, provides.service());
+			writeStrings(output, provides.providers());
+		}
+		if (descriptor.isAutomatic()) {
+			return;
+		}
+		output.writeInt(descriptor.requires().size());
+		for (var requires : descriptor.requires()) {
+			writeString(output, requires.name());
+			writeStrings(output, requires.modifiers().stream().map(Enum::name).toList());
+			writeOptional(output, requires.compiledVersion().map(Object::toString));
+		}
+		output.writeInt(descriptor.exports().size());
+		for (var exports : descriptor.exports()) {
+			writeString(output, exports.source());
+			writeStrings(output, exports.modifiers().stream().map(Enum::name).toList());
+			writeStrings(output, exports.targets());
+		}
+		if (descriptor.isOpen()) {
+			return;
+		}
+		output.writeInt(descriptor.opens().size());
+		for (var opens : descriptor.opens()) {
+			writeString(output, opens.source());
+			writeStrings(output, opens.modifiers().stream().map(Enum::name).toList());
+			writeStrings(output, opens.targets());
+		}
+	}
+
+
+	private static ModuleDescriptor readDescriptor(DataInputStream input) throws IOException {
+		String name = readString(input);
+		var modifiers = readStrings(input).stream()
+			.map(ModuleDescriptor.Modifier::valueOf)
+			.collect(Collectors.toSet());
+		var version = readOptional(input);
+		var mainClass = readOptional(input);
+		var builder = modifiers.contains(ModuleDescriptor.Modifier.AUTOMATIC) ?
+			ModuleDescriptor.newAutomaticModule(name) :
+			ModuleDescriptor.newModule(name, modifiers);
+		builder.packages(new HashSet<>(readStrings(input)));
+		readStrings(input).forEach(builder::uses);
+		int provides = input.readInt();
+		for (int i = 0; i < provides; i++) {
+			builder.provides(readString(input), readStrings(input));
+		}
+		version.ifPresent(builder::version);
+		mainClass.ifPresent(builder::mainClass);
+		if (modifiers.contains(ModuleDescriptor.Modifier.AUTOMATIC)) {
+			return builder.build();
+		}
+		int requires = input.readInt();
+		for (int i = 0; i < requires; i++) {
+			String module = readString(input);
+			var requiresModifiers = readStrings(input).stream()
+				.map(ModuleDescriptor.Requires.Modifier::valueOf)
+				.collect(Collectors.toSet());
+			var compiledVersion = readOptional(input);
+			if (compiledVersion.isPresent()) {
+				builder.requires(requiresModifiers, module, ModuleDescriptor.Version.parse(compiledVersion.get()));
+			} else {
+				builder.requires(requiresModifiers, module);
+			}
+		}
+		int exports = input.readInt();
+		for (int i = 0; i < exports; i++) {
+			String source = readString(input);
+			var exportsModifiers = readStrings(input).stream()
+				.map(ModuleDescriptor.Exports.Modifier::valueOf)
+				.collect(Collectors.toSet());
+			var targets = new HashSet<>(readStrings(input));
+			if (targets.isEmpty()) {
+				builder.exports(exportsModifiers, source);
+			} else {
+				builder.exports(exportsModifiers, source, targets);
+			}
+		}
+		if (modifiers.contains(ModuleDescriptor.Modifier.OPEN)) {
+			return builder.build();
+		}
+		int opens = input.readInt();
+		for (int i = 0; i < opens; i++) {
+			String source = readString(input);
+			var opensModifiers = readStrings(input).stream()
+				.map(ModuleDescriptor.Opens.Modifier::valueOf)
+				.collect(Collectors.toSet());
+			var targets = new HashSet<>(readStrings(input));
+			if (targets.isEmpty()) {
+				builder.opens(opensModifiers, source);
+			} else {
+				builder.opens(opensModifiers, source, targets);
+			}
+		}
+		return builder.build();
+	}
+
+
+
+	private static void writeString(DataOutputStream output, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+
+	private static String readString(DataInputStream input) throws IOException {
+		int length = input.readInt();
+		byte[] bytes = input.readNBytes(length);
+		if (bytes.length != length) {
+			throw new EOFException();
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+
+	private static void writeStrings(DataOutputStream output, Collection<String> values) throws IOException {
+		output.writeInt(values.size());
+		for (String value : values) {
+			writeString(output, value);
+		}
+	}
+
+
+	private static List<String> readStrings(DataInputStream input) throws IOException {
+		int count = input.readInt();
+		List<String> values = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			values.add(readString(input));
+		}
+		return List.copyOf(values);
+	}
+
+
+	private static void writeOptional(DataOutputStream output, Optional<String> value) throws IOException {
+		output.writeBoolean(value.isPresent());
+		if (value.isPresent()) {
+			writeString(output, value.get());
+		}
+	}
+
+
+	private static Optional<String> readOptional(DataInputStream input) throws IOException {
+		return input.readBoolean() ? Optional.of(readString(input)) : Optional.empty();
+	}
+
+}
@@ -0,0 +1,172 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.plugin;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipFile;
+import org.slf4j.Logger;
+
+
+/**
+ * Watches the plugin files of a warehouse folder, notifying when they have
+ * changed.
+ * <p>
+ * File events are debounced: the notification is only sent once no event has been
+ * received during the given period and every changed plugin file is complete (its
+ * size is stable and it can be opened as a zip file), so copying many files at
+ * once results in a single notification. Files that still cannot be opened after
+ * their size has been stable for two periods are considered complete as well,
+ * leaving the store to reject them.
+ */
+final class WarehouseWatcher implements AutoCloseable {
+
+	private final Path folder;
+	private final Duration debounce;
+	private final Logger logger;
+	private final Runnable onChange;
+	private final WatchService watchService;
+	private final Thread thread;
+
+
+	WarehouseWatcher(Path folder, Duration debounce, Logger logger, Runnable onChange) {
+		this.folder = folder;
+		this.debounce = debounce;
+		this.logger = logger;
+		this.onChange = onChange;
+		try {
+			this.watchService = folder.getFileSystem().newWatchService();
+			folder.register(
+				watchService,
+				StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY,
+				StandardWatchEventKinds.ENTRY_DELETE
+			);
+		} catch (IOException e) {
+			throw new PluginException(e, "Cannot watch plugin store folder {}", folder);
+		}
+		this.thread = new Thread(this::run, "jexten-warehouse-watcher");
+		this.thread.setDaemon(true);
+	}
+
+
+	WarehouseWatcher start() {
+		thread.start();
+		logger.debug("watching plugin store folder {}", folder);
+		return this;
+	}
+
+
+	@Override
+	public void close() {
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			logger.debug("", e);
+		}
+	}
+
+
+	private void run() {
+		try {
+			while (true) {
+				Map<Path,Long> changedFiles = new HashMap<>();
+				collectEvents(watchService.take(), changedFiles);
+				awaitSettled(changedFiles);
+				logger.info("Plugin files changed: {}", changedFiles.keySet());
+				try {
+					onChange.run();
+				} catch (RuntimeException e) {
+					logger.error("Cannot reload the plugin store: {}", e.getMessage());
+					logger.debug("", e);
+				}
+			}
+		} catch (ClosedWatchServiceException e) {
+			logger.debug("stopped watching plugin store folder {}", folder);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	/*
+	 * Keep waiting while events keep arriving or any changed file is still being
+	 * written
+	 */
+	private void awaitSettled(Map<Path,Long> changedFiles) throws InterruptedException {
+		// files with a stable size that could not be opened in the previous period
+		Set<Path> invalidFiles = new HashSet<>();
+		while (true) {
+			WatchKey key = watchService.poll(debounce.toMillis(), TimeUnit.MILLISECONDS);
+			if (key != null) {
+				collectEvents(key, changedFiles);
+			} else if (changedFiles.entrySet().stream().filter(file -> !isComplete(file, invalidFiles)).count() == 0) {
+				return;
+			} else {
+				changedFiles.replaceAll((file, size) -> sizeOf(file));
+			}
+		}
+	}
+
+
+	private void collectEvents(WatchKey key, Map<Path,Long> changedFiles) {
+		for (var event : key.pollEvents()) {
+			if (event.context() instanceof Path name && isPluginFile(name)) {
+				Path file = folder.resolve(name);
+				changedFiles.put(file, sizeOf(file));
+			} else if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				changedFiles.put(folder, -1L);
+			}
+		}
+		key.reset();
+	}
+
+
+	private boolean isComplete(Map.Entry<Path,Long> changedFile, Set<Path> invalidFiles) {
+		Path file = changedFile.getKey();
+		if (file.equals(folder) || Files.notExists(file)) {
+			return true;
+		}
+		if (sizeOf(file) != changedFile.getValue()) {
+			invalidFiles.remove(file);
+			return false;
+		}
+		if (isZipFile(file)) {
+			return true;
+		}
+		if (!invalidFiles.add(file)) {
+			logger.debug("plugin file {} is not a valid zip file", file);
+			return true;
+		}
+		return false;
+	}
+
+
+	private static boolean isZipFile(Path file) {
+		try {
+			new ZipFile(file.toFile()).close();
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+
+	private static boolean isPluginFile(Path name) {
+		String fileName = name.getFileName().toString();
+		return fileName.endsWith(".zip") && !fileName.startsWith(".");
+	}
+
+
+	private static long sizeOf(Path file) {
+		try {
+			return Files.size(file);
+		} catch (IOException e) {
+			return -1L;
+		}
+	}
+
+}
@@ -28,7 +28,17 @@ public class ModuleLayerTree {
 
 
 	public ModuleLayerTree(Map<Plugin,ModuleLayer> pluginMap) {
-		this(null,ModuleLayer.boot(),null,0,pluginMap);
+		this(pluginMap, null);
+	}
+
+
+	/**
+	 * Create a new tree reusing the information of a previous tree regarding the
+	 * layers that are present in both of them.
+	 * @param previous The previous tree, or <code>null</code>
+	 */
+	public ModuleLayerTree(Map<Plugin,ModuleLayer> pluginMap, ModuleLayerTree previous) {
+		this(null,ModuleLayer.boot(),null,0,childrenByLayer(pluginMap),modulesByLayer(previous));
 	}
 
 
@@ -37,24 +47,52 @@ public class ModuleLayerTree {
 		ModuleLayer moduleLayer,
 		Plugin plugin,
 		int depth,
-		Map<Plugin,ModuleLayer> pluginMap
+		Map<ModuleLayer,List<Map.Entry<Plugin,ModuleLayer>>> childrenByLayer,
+		Map<ModuleLayer,List<Module>> modulesByLayer
 	) {
 		this.parent = parent;
 		this.moduleLayer = moduleLayer;
-		this.modules = moduleLayer.modules().stream()
-			.filter(it -> !JAVA_MODULE.matcher(it.getName()).matches())
-			.sorted(Comparator.comparing(Module::getName))
-			.toList();
+		this.modules = modulesByLayer.containsKey(moduleLayer) ?
+			modulesByLayer.get(moduleLayer) :
+			moduleLayer.modules().stream()
+				.filter(it -> !JAVA_MODULE.matcher(it.getName()).matches())
+				.sorted(Comparator.comparing(Module::getName))
+				.toList();
 		this.plugin = plugin;
 		this.depth = depth;
 		this.children =
-			pluginMap.entrySet().stream()
-			.filter(e -> e.getValue().parents().contains(moduleLayer))
-			.map(e -> new ModuleLayerTree(this, e.getValue(), e.getKey(), depth+1,pluginMap))
+			childrenByLayer.getOrDefault(moduleLayer, List.of()).stream()
+			.map(e -> new ModuleLayerTree(this, e.getValue(), e.getKey(), depth+1, childrenByLayer, modulesByLayer))
 			.toList();
 	}
 
 
+	private static Map<ModuleLayer,List<Map.Entry<Plugin,ModuleLayer>>> childrenByLayer(
+		Map<Plugin,ModuleLayer> pluginMap
+	) {
+		Map<ModuleLayer,List<Map.Entry<Plugin,ModuleLayer>>> childrenByLayer = new IdentityHashMap<>();
+		pluginMap.entrySet().stream()
+			.sorted(Comparator.comparing(e -> e.getKey().toString()))
+			.forEach(e -> e.getValue().parents().forEach(
+				parentLayer -> childrenByLayer.computeIfAbsent(parentLayer, it -> new ArrayList<>()).add(e)
+			));
+		return childrenByLayer;
+	}
+
+
+	/*
+	 * Nodes cannot be reused since each one is linked to its parent, but the
+	 * module list of each layer can
+	 */
+	private static Map<ModuleLayer,List<Module>> modulesByLayer(ModuleLayerTree previous) {
+		Map<ModuleLayer,List<Module>> modulesByLayer = new IdentityHashMap<>();
+		if (previous != null) {
+			previous.forEach((Consumer<ModuleLayerTree>) node -> modulesByLayer.put(node.moduleLayer, node.modules));
+		}
+		return modulesByLayer;
+	}
+
+
 	public Optional<ModuleLayerTree> parent() {
 		return Optional.ofNullable(parent);
 	}
@@ -5,4 +5,6 @@ module jexten {
 	requires org.slf4j;
 	requires org.fusesource.jansi;
 	requires slf4jansi;
+	provides java.net.spi.URLStreamHandlerProvider
+		with jexten.internal.NestedJarURLStreamHandlerProvider;
 }
\ No newline at end of file
@@ -1,12 +1,24 @@
 package jexten.test;
 
+import static jexten.test.PluginFixtures.*;
 import static org.assertj.core.api.Assertions.assertThat;
-
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Optional;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import jexten.*;
 import jexten.test.ext.*;
+import jexten.test.plugin.PluginExtensionPoint;
 import org.junit.jupiter.api.Test;
 
 class ITExtensionManager {
@@ -82,6 +94,250 @@ class ITExtensionManager {
     }
 
 
+    @Test
+    void globalScopeIsOwnedByEachExtensionManager() {
+        var otherExtensionManager = ExtensionManager.create(ModuleLayerProvider.boot());
+        var derivedExtensionManager = otherExtensionManager.withInjectionProvider(InjectionProvider.empty());
+
+        var singleton = extensionManager
+            .getExtension(SimpleExtensionPoint.class, classEqualTo(SingletonExtension.class))
+            .orElseThrow();
+        var otherSingleton = otherExtensionManager
+            .getExtension(SimpleExtensionPoint.class, classEqualTo(SingletonExtension.class))
+            .orElseThrow();
+        var derivedSingleton = derivedExtensionManager
+            .getExtension(SimpleExtensionPoint.class, classEqualTo(SingletonExtension.class))
+            .orElseThrow();
+        otherExtensionManager.clear();
+        var singletonAfterClear = extensionManager
+            .getExtension(SimpleExtensionPoint.class, classEqualTo(SingletonExtension.class))
+            .orElseThrow();
+
+        assertThat(singleton).isNotSameAs(otherSingleton);
+        assertThat(derivedSingleton).isSameAs(otherSingleton);
+        assertThat(singletonAfterClear).isSameAs(singleton);
+    }
+
+
+    @Test
+    void derivedManagersShareTheLayerChangeListener() {
+        List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+        var layerProvider = new ModuleLayerProvider() {
+            @Override
+            public Stream<ModuleLayer> moduleLayers() {
+                return Stream.of(ModuleLayer.boot());
+            }
+            @Override
+            public void addChangeListener(Runnable listener) {
+                changeListeners.add(listener);
+            }
+        };
+        var derivedManager = ExtensionManager.create(layerProvider);
+        for (int i = 0; i < 10; i++) {
+            derivedManager = derivedManager.withInjectionProvider(InjectionProvider.empty());
+        }
+        assertThat(changeListeners).hasSize(1);
+
+        var handle = derivedManager.handle(SimpleExtensionPoint.class, classEqualTo(SingletonExtension.class));
+        var extensions = handle.all();
+        changeListeners.get(0).run();
+        // the derived manager is notified as well, so the handle resolves the extensions again
+        assertThat(handle.all()).isNotSameAs(extensions).isEqualTo(extensions);
+    }
+
+
+    @Test
+    void clearedGlobalExtensionsAreReleasedWhileTheirClassIsStillLoaded() throws IOException, InterruptedException {
+        var currentLayer = new AtomicReference<>(defineLayer(ModuleLayer.boot(), globalPluginJar("sigma")));
+        var manager = ExtensionManager.create(() -> Stream.ofNullable(currentLayer.get()));
+        var extension = manager.getExtension(PluginExtensionPoint.class).orElseThrow();
+        assertThat(manager.getExtension(PluginExtensionPoint.class)).contains(extension);
+        // the class (and so its class loader) is kept, only the instance should be released
+        Class<?> extensionClass = extension.getClass();
+        var released = new WeakReference<>(extension);
+        extension = null;
+
+        currentLayer.set(null);
+        manager.clear();
+        for (int i = 0; i < 50 && released.get() != null; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertThat(released.get()).isNull();
+        assertThat(extensionClass.getModule().getName()).isEqualTo("plugin.sigma");
+    }
+
+
+    @Test
+    void providerIndexIsReusedWhileTheLayersAreUnchanged() throws IOException {
+        var layer = defineLayer(ModuleLayer.boot(), pluginJar("alpha", "1.0.0"));
+        List<String> events = new CopyOnWriteArrayList<>();
+        var manager = ExtensionManager.create(() -> Stream.of(layer)).withListener(providerIndexListener(events));
+
+        assertThat(describe(manager.getExtensions(PluginExtensionPoint.class).toList())).containsExactly("alpha 1.0.0");
+        assertThat(manager.getExtension(PluginExtensionPoint.class)).isPresent();
+        assertThat(manager.getExtensionByName(PluginExtensionPoint.class, name -> true)).isPresent();
+        assertThat(events).containsExactly("miss", "hit", "hit");
+    }
+
+
+    @Test
+    void providerIndexIsRebuiltWhenTheLayersChange() throws IOException {
+        var alphaLayer = defineLayer(ModuleLayer.boot(), pluginJar("alpha", "1.0.0"));
+        var betaLayer = defineLayer(ModuleLayer.boot(), pluginJar("beta", "1.0.0"));
+        var currentLayer = new AtomicReference<>(alphaLayer);
+        List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+        var layerProvider = new ModuleLayerProvider() {
+            @Override
+            public Stream<ModuleLayer> moduleLayers() {
+                return Stream.of(currentLayer.get());
+            }
+            @Override
+            public void addChangeListener(Runnable listener) {
+                changeListeners.add(listener);
+            }
+        };
+        List<String> events = new CopyOnWriteArrayList<>();
+        var manager = ExtensionManager.create(layerProvider).withListener(providerIndexListener(events));
+        assertThat(describe(manager.getExtensions(PluginExtensionPoint.class).toList())).containsExactly("alpha 1.0.0");
+
+        // the layers may change without notice
+        currentLayer.set(betaLayer);
+        assertThat(describe(manager.getExtensions(PluginExtensionPoint.class).toList())).containsExactly("beta 1.0.0");
+        assertThat(describe(manager.getExtensions(PluginExtensionPoint.class).toList())).containsExactly("beta 1.0.0");
+
+        // a notified change keeps the index as long as the layers are the same
+        changeListeners.forEach(Runnable::run);
+        assertThat(manager.getExtension(PluginExtensionPoint.class)).isPresent();
+        currentLayer.set(alphaLayer);
+        changeListeners.forEach(Runnable::run);
+        assertThat(describe(manager.getExtensions(PluginExtensionPoint.class).toList())).containsExactly("alpha 1.0.0");
+
+        assertThat(events).containsExactly("miss", "miss", "hit", "hit", "miss");
+    }
+
+
+    @Test
+    void handleKeepsResolvedExtensionsUntilCleared() {
+        var singletonHandle = extensionManager.handle(
+            SimpleExtensionPoint.class,
+            classEqualTo(SingletonExtension.class)
+        );
+        var transientHandle = extensionManager.handle(
+            SimpleExtensionPoint.class,
+            classEqualTo(TransientExtension.class)
+        );
+
+        var singleton = singletonHandle.get().orElseThrow();
+        var singletons = singletonHandle.all();
+        assertThat(singletonHandle.all()).isSameAs(singletons).containsExactly(singleton);
+        assertThat(singletonHandle.get().orElseThrow()).isSameAs(singleton);
+
+        extensionManager.clear();
+        var singletonAfterClear = singletonHandle.get().orElseThrow();
+        assertThat(singletonAfterClear).isNotSameAs(singleton);
+        assertThat(singletonHandle.all()).isNotSameAs(singletons).containsExactly(singletonAfterClear);
+        assertThat(transientHandle.get().orElseThrow()).isNotSameAs(transientHandle.get().orElseThrow());
+    }
+
+
+    @Test
+    void handleIsResolvedAgainWhenTheLayersVersionChanges() throws IOException {
+        var alphaLayer = defineLayer(ModuleLayer.boot(), pluginJar("alpha", "1.0.0"));
+        var betaLayer = defineLayer(ModuleLayer.boot(), pluginJar("beta", "1.0.0"));
+        var currentLayer = new AtomicReference<>(alphaLayer);
+        var requests = new AtomicInteger();
+        // the layer provider does not support change listeners, but it is versioned
+        var layerProvider = new ModuleLayerProvider() {
+            @Override
+            public Stream<ModuleLayer> moduleLayers() {
+                requests.incrementAndGet();
+                return Stream.of(currentLayer.get());
+            }
+            @Override
+            public long version() {
+                return currentLayer.get() == alphaLayer ? 1 : 2;
+            }
+        };
+        var handle = ExtensionManager.create(layerProvider).handle(PluginExtensionPoint.class);
+
+        var extensions = handle.all();
+        assertThat(describe(extensions)).containsExactly("alpha 1.0.0");
+        assertThat(handle.all()).isSameAs(extensions);
+        assertThat(handle.get().map(PluginExtensionPoint::describe)).contains("alpha 1.0.0");
+        // reading the handle does not even request the module layers
+        assertThat(requests.get()).isEqualTo(1);
+
+        currentLayer.set(betaLayer);
+        assertThat(describe(handle.all())).containsExactly("beta 1.0.0");
+        assertThat(handle.get().map(PluginExtensionPoint::describe)).contains("beta 1.0.0");
+        assertThat(requests.get()).isEqualTo(2);
+    }
+
+
+    @Test
+    void globalExtensionsRequestingEachOtherFromTwoThreadsDoNotBlock() throws InterruptedException {
+        // the threads must check the dependency cycle at the same time, so it is tried several times
+        for (int attempt = 0; attempt < 50; attempt++) {
+            var manager = ExtensionManager.create();
+            MutualDependencies.reset(manager, 2);
+            List<Optional<MutualExtensionPoint>> results = new CopyOnWriteArrayList<>();
+            var threads = Stream.of(MutualExtensionA.class, MutualExtensionB.class)
+                .map(type -> new Thread(() -> results.add(
+                    manager.getExtension(MutualExtensionPoint.class, classEqualTo(type))
+                )))
+                .toList();
+            for (var thread : threads) {
+                thread.setDaemon(true);
+                thread.start();
+            }
+            for (var thread : threads) {
+                thread.join(10_000);
+            }
+            // the circular dependency is reported to one of the threads instead of blocking both
+            assertThat(threads).noneMatch(Thread::isAlive);
+            assertThat(results).hasSize(2);
+        }
+    }
+
+
+    @Test
+    void extensionsAreDiscoveredLayerByLayerAsTheServiceLoaderDoes() throws IOException {
+        var parentLayer = defineLayer(
+            ModuleLayer.boot(),
+            pluginJar("alpha", "1.0.0"),
+            pluginJar("beta", "1.0.0"),
+            pluginJar("gamma", "1.0.0")
+        );
+        var childLayer = defineLayer(parentLayer, pluginJar("delta", "1.0.0"));
+        ITExtensionManager.class.getModule().addUses(PluginExtensionPoint.class);
+        var loadedExtensions = ServiceLoader.load(childLayer, PluginExtensionPoint.class).stream()
+            .map(ServiceLoader.Provider::get)
+            .toList();
+        // every extension has the same priority, so they are kept in order of discovery
+        var extensions = ExtensionManager.create(() -> Stream.of(childLayer, parentLayer))
+            .getExtensions(PluginExtensionPoint.class)
+            .toList();
+        assertThat(describe(loadedExtensions))
+            .containsExactlyInAnyOrder("alpha 1.0.0", "beta 1.0.0", "gamma 1.0.0", "delta 1.0.0");
+        assertThat(describe(extensions)).containsExactlyInAnyOrder(describe(loadedExtensions).toArray(String[]::new));
+        assertThat(layersOf(extensions)).isEqualTo(layersOf(loadedExtensions));
+    }
+
+
+    @Test
+    void providersThatDoNotImplementTheExtensionPointAreSkipped() throws IOException {
+        var layer = defineLayer(ModuleLayer.boot(), pluginJar("alpha", "1.0.0"), misdeclaredPluginJar("omega"));
+        ITExtensionManager.class.getModule().addUses(PluginExtensionPoint.class);
+        assertThatThrownBy(() -> ServiceLoader.load(layer, PluginExtensionPoint.class).stream().toList())
+            .isInstanceOf(ServiceConfigurationError.class);
+        assertThat(ExtensionManager.create(() -> Stream.of(layer))
+            .getExtensions(PluginExtensionPoint.class)
+            .map(PluginExtensionPoint::describe)
+        ).containsExactly("alpha 1.0.0");
+    }
+
+
     @Test
     void canRetrieveExtensionUsingExternalLoader() {
         TestingExtensionLoader.lastExtensionLoaded = null;
@@ -106,6 +362,30 @@ class ITExtensionManager {
 
 
 
+    @Test
+    void injectionPlanCoversInheritedFieldsAndIsReusedAcrossInstances() {
+        List<String> events = new CopyOnWriteArrayList<>();
+        var observedExtensionManager = ExtensionManager.create(ModuleLayerProvider.boot())
+            .withListener(injectionPlanListener(events));
+        var first = (DerivedInjectedExtension) observedExtensionManager
+            .getExtension(DerivedExtensionPoint.class).orElseThrow();
+        var second = (DerivedInjectedExtension) observedExtensionManager
+            .getExtension(DerivedExtensionPoint.class).orElseThrow();
+        assertThat(second).isNotSameAs(first);
+        for (var extension : List.of(first, second)) {
+            assertThat(extension.injectedExtension()).isInstanceOf(InjectedExtension.class);
+            assertThat(extension.injectedList()).hasSize(1).allMatch(InjectedExtension.class::isInstance);
+            assertThat(extension.ownList()).hasSize(1).allMatch(InjectedExtension.class::isInstance);
+            assertThat(extension.postConstructInjectedExtension()).isSameAs(extension.injectedExtension());
+        }
+        assertThat(events).containsExactly(
+            "miss:DerivedInjectedExtension",
+            "hit:DerivedInjectedExtension"
+        );
+    }
+
+
+
     @Test
     void extensionInjectionAcceptsDependencyLoopsInFields() {
         var extension = (InjectedLoopExtension) extensionManager
@@ -141,6 +421,60 @@ class ITExtensionManager {
 
 
 
+    @Test
+    void listenerIsNotifiedOfTheLookupActivity() {
+        List<String> events = new CopyOnWriteArrayList<>();
+        var observedExtensionManager = ExtensionManager.create(ModuleLayerProvider.boot())
+            .withListener(new ExtensionManagerListener() {
+                @Override
+                public void lookupFinished(Class<?> extensionPoint, long duration) {
+                    events.add("lookup:" + extensionPoint.getSimpleName());
+                }
+                @Override
+                public void extensionInstantiated(Class<?> extension, Scope scope, long duration) {
+                    events.add("new:" + extension.getSimpleName());
+                }
+                @Override
+                public void cacheHit(Cache cache, Class<?> key) {
+                    events.add("hit:" + cache + ":" + key.getSimpleName());
+                }
+            });
+        observedExtensionManager.getExtension(SimpleExtensionPoint.class, classEqualTo(TransientExtension.class));
+        observedExtensionManager.getExtension(SimpleExtensionPoint.class, classEqualTo(TransientExtension.class));
+        // the lookup only covers the providers, so it finishes before the instantiation
+        assertThat(events).containsExactly(
+            "lookup:SimpleExtensionPoint",
+            "new:TransientExtension",
+            "hit:PROVIDER_INDEX:SimpleExtensionPoint",
+            "lookup:SimpleExtensionPoint",
+            "new:TransientExtension",
+            "hit:INJECTION_PLAN:TransientExtension",
+            "hit:POST_CONSTRUCT:TransientExtension"
+        );
+    }
+
+
+
+    @Test
+    void readingAHandleIsNotNotifiedAsALookup() {
+        List<String> events = new CopyOnWriteArrayList<>();
+        var handle = ExtensionManager.create(ModuleLayerProvider.boot())
+            .withListener(new ExtensionManagerListener() {
+                @Override
+                public void lookupFinished(Class<?> extensionPoint, long duration) {
+                    events.add("lookup:" + extensionPoint.getSimpleName());
+                }
+            })
+            .handle(SimpleExtensionPoint.class, classEqualTo(SingletonExtension.class));
+        for (int i = 0; i < 3; i++) {
+            assertThat(handle.get()).isPresent();
+            assertThat(handle.all()).hasSize(1);
+        }
+        assertThat(events).containsExactly("lookup:SimpleExtensionPoint");
+    }
+
+
+
     private <T> Predicate<? super T> exactInstanceOf(Class<?> type) {
         return it -> it.getClass() == type;
     }
@@ -151,4 +485,50 @@ class ITExtensionManager {
     }
 
 
+    private static ExtensionManagerListener injectionPlanListener(List<String> events) {
+        return new ExtensionManagerListener() {
+            @Override
+            public void cacheHit(Cache cache, Class<?> key) {
+                if (cache == Cache.INJECTION_PLAN && key == DerivedInjectedExtension.class) {
+                    events.add("hit:" + key.getSimpleName());
+                }
+            }
+            @Override
+            public void cacheMiss(Cache cache, Class<?> key) {
+                if (cache == Cache.INJECTION_PLAN && key == DerivedInjectedExtension.class) {
+                    events.add("miss:" + key.getSimpleName());
+                }
+            }
+        };
+    }
+
+
+    private static ExtensionManagerListener providerIndexListener(List<String> events) {
+        return new ExtensionManagerListener() {
+            @Override
+            public void cacheHit(Cache cache, Class<?> key) {
+                if (cache == Cache.PROVIDER_INDEX) {
+                    events.add("hit");
+                }
+            }
+            @Override
+            public void cacheMiss(Cache cache, Class<?> key) {
+                if (cache == Cache.PROVIDER_INDEX) {
+                    events.add("miss");
+                }
+            }
+        };
+    }
+
+
+    private static List<String> describe(List<PluginExtensionPoint> extensions) {
+        return extensions.stream().map(PluginExtensionPoint::describe).toList();
+    }
+
+
+    private static List<ModuleLayer> layersOf(List<?> extensions) {
+        return extensions.stream().map(extension -> extension.getClass().getModule().getLayer()).toList();
+    }
+
+
 }
@@ -0,0 +1,569 @@
+package jexten.test;
+
+import static jexten.test.PluginFixtures.*;
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.lang.module.ModuleFinder;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.jar.*;
+import java.util.stream.Stream;
+import java.util.zip.*;
+
+import jexten.*;
+import jexten.plugin.*;
+import jexten.test.ext.VersionedExtensionPoint;
+import jexten.test.plugin.PluginExtensionPoint;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+class ITPluginStore {
+
+    @TempDir
+    Path warehouse;
+
+    private PluginStore store;
+
+
+    @AfterEach
+    void closeStore() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+
+    @Test
+    void pluginsAreReadInParallelUsingTheGivenExecutor() throws IOException {
+        writePlugin(warehouse, "alpha", "1.0.0", true);
+        writePlugin(warehouse, "beta", "1.0.0", true);
+        writePlugin(warehouse, "gamma", "1.0.0", false);
+        var pool = Executors.newFixedThreadPool(3);
+        var tasks = new AtomicInteger();
+        Executor executor = task -> {
+            tasks.incrementAndGet();
+            pool.execute(task);
+        };
+        try {
+            store = storeBuilder().executor(executor).build();
+            assertThat(describePlugins(store)).containsExactly("alpha 1.0.0", "beta 1.0.0", "gamma 1.0.0");
+            assertThat(tasks.get()).isGreaterThanOrEqualTo(3);
+            // the given executor is owned by the caller
+            store.close();
+            assertThat(pool.isShutdown()).isFalse();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+
+    @Test
+    void pluginLayersAreBuiltOverTheLayerOfTheirHostUsingTheGivenExecutor() throws IOException {
+        writePlugin(warehouse, "host", "1.0.0", true);
+        writeHostedPlugin(warehouse, "left", "1.0.0", "host");
+        writeHostedPlugin(warehouse, "right", "1.0.0", "host");
+        writeHostedPlugin(warehouse, "orphan", "1.0.0", "missing");
+        var pool = Executors.newFixedThreadPool(3);
+        var tasks = new AtomicInteger();
+        Executor executor = task -> {
+            tasks.incrementAndGet();
+            pool.execute(task);
+        };
+        try {
+            store = storeBuilder().executor(executor).build();
+            assertThat(describePlugins(store)).containsExactly(
+                "host 1.0.0",
+                "left 1.0.0 on host 1.0.0",
+                "right 1.0.0 on host 1.0.0"
+            );
+            // the plugin hosted by a missing plugin is ignored
+            assertThat(store.moduleLayersByPlugin().keySet().stream().map(Plugin::id))
+                .containsExactlyInAnyOrder(pluginID("host"), pluginID("left"), pluginID("right"));
+            var hostLayer = pluginLayer("host");
+            assertThat(hostLayer.parents()).containsExactly(ModuleLayer.boot());
+            assertThat(pluginLayer("left").parents()).containsExactly(hostLayer);
+            assertThat(pluginLayer("right").parents()).containsExactly(hostLayer);
+            // four plugin files read, and three layers built
+            assertThat(tasks.get()).isGreaterThanOrEqualTo(7);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+
+    @Test
+    void unchangedLayersAreReusedAndRemovedOnesReleased() throws IOException, InterruptedException {
+        writePlugin(warehouse, "alpha", "1.0.0", true);
+        writePlugin(warehouse, "beta", "1.0.0", true);
+        store = storeBuilder().build();
+        var alphaLayer = pluginLayer("alpha");
+        var betaLayer = new WeakReference<>(pluginLayer("beta"));
+
+        store.removePlugin(pluginID("beta"));
+        assertThat(pluginLayer("alpha")).isSameAs(alphaLayer);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (betaLayer.get() != null && System.nanoTime() < deadline) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertThat(betaLayer.get()).isNull();
+    }
+
+
+    @Test
+    void lazyActivationOnlyActivatesPluginsProvidingTheRequestedExtensionPoint() throws IOException {
+        writePlugin(warehouse, "alpha", "1.0.0", true);
+        writeIdlePlugin(warehouse, "beta", "1.0.0");
+        // the host provides no extension, but it is required by the hosted plugin
+        writeIdlePlugin(warehouse, "gamma", "1.0.0");
+        writeHostedPlugin(warehouse, "delta", "1.0.0", "gamma");
+        var pool = Executors.newFixedThreadPool(2);
+        var tasks = new AtomicInteger();
+        Executor executor = task -> {
+            tasks.incrementAndGet();
+            pool.execute(task);
+        };
+        try {
+            store = storeBuilder().executor(executor).lazyActivation(true).build();
+            assertThat(store.plugins()).hasSize(4);
+            tasks.set(0);
+
+            var layers = store.moduleLayers(PluginExtensionPoint.class).toList();
+            assertThat(layers.stream().flatMap(layer -> layer.modules().stream()).map(Module::getName))
+                .containsExactlyInAnyOrder("plugin.alpha", "plugin.delta");
+            // a layer is built for each of them and for the host of delta
+            assertThat(tasks.get()).isEqualTo(3);
+            assertThat(describePlugins(store)).containsExactly("alpha 1.0.0", "delta 1.0.0 on gamma 1.0.0");
+
+            // requesting every layer activates the rest, reusing the ones already built
+            assertThat(store.moduleLayersByPlugin()).hasSize(4);
+            assertThat(tasks.get()).isEqualTo(4);
+            assertThat(pluginLayer("alpha")).isSameAs(layers.get(0));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+
+    @Test
+    void extensionPointsProvidedByNoPluginAreLookedUpInTheBootLayer() throws IOException {
+        writePlugin(warehouse, "alpha", "1.0.0", true);
+        store = storeBuilder().build();
+        assertThat(store.moduleLayers(PluginExtensionPoint.class)).containsExactly(pluginLayer("alpha"));
+        assertThat(store.moduleLayers(VersionedExtensionPoint.class)).containsExactly(ModuleLayer.boot());
+        assertThat(ExtensionManager.create(store).getExtensions(VersionedExtensionPoint.class)).isNotEmpty();
+    }
+
+
+    @Test
+    void emptyStoresProvideNoLayerForAnyExtensionPoint() {
+        store = storeBuilder().build();
+        assertThat(store.moduleLayers(PluginExtensionPoint.class)).isEmpty();
+        assertThat(store.moduleLayers(VersionedExtensionPoint.class)).isEmpty();
+    }
+
+
+    @Test
+    void watchedWarehouseIsReloadedAlthoughAChangedFileIsNotAZipFile() throws IOException, InterruptedException {
+        store = storeBuilder().watchWarehouse(Duration.ofMillis(50)).build();
+        assertThat(store.plugins()).isEmpty();
+        // its size is stable, so it is not awaited forever
+        Files.writeString(warehouse.resolve("broken-1.0.0.zip"), "not a zip file");
+        writePlugin(warehouse, "alpha", "1.0.0", true);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (store.plugins().findAny().isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(store.plugins().map(Plugin::id)).containsExactly(pluginID("alpha"));
+    }
+
+
+    @Test
+    void watchDebouncePeriodMustBeAtLeastOneMillisecond() {
+        assertThatThrownBy(() -> storeBuilder().watchWarehouse(Duration.ZERO))
+            .isInstanceOf(PluginException.class);
+        assertThatThrownBy(() -> storeBuilder().watchWarehouse(Duration.ofNanos(1)))
+            .isInstanceOf(PluginException.class);
+    }
+
+
+    @Test
+    void failedRebuildsAreNotRetriedByEachRead() throws IOException {
+        writePlugin(warehouse, "alpha", "1.0.0", true);
+        var pool = Executors.newFixedThreadPool(2);
+        var rejecting = new AtomicBoolean();
+        var rejectedTasks = new AtomicInteger();
+        Executor executor = task -> {
+            if (rejecting.get()) {
+                rejectedTasks.incrementAndGet();
+                throw new RejectedExecutionException();
+            }
+            pool.execute(task);
+        };
+        try {
+            store = storeBuilder().executor(executor).build();
+            assertThat(store.plugins().map(Plugin::id)).containsExactly(pluginID("alpha"));
+            rejecting.set(true);
+            assertThatThrownBy(() -> store.removePlugin(pluginID("alpha"))).isInstanceOf(PluginException.class);
+            assertThat(rejectedTasks.get()).isEqualTo(1);
+            // the previous plugins are kept meanwhile
+            for (int i = 0; i < 100; i++) {
+                assertThat(store.plugins().map(Plugin::id)).containsExactly(pluginID("alpha"));
+            }
+            assertThat(rejectedTasks.get()).isEqualTo(1);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+
+    @Test
+    void pluginsInUseAreNeverEvicted(@TempDir Path downloads) throws IOException {
+        writePlugin(warehouse, "alpha", "1.0.0", false);
+        store = storeBuilder().pluginCache(0, Duration.ZERO).build();
+        var alpha = store.plugins().findFirst().orElseThrow();
+        var extractions = extractions();
+
+        store.installPluginFromZipFile(writePlugin(downloads, "beta", "1.0.0", true));
+        assertThat(store.plugins().map(Plugin::id)).containsExactlyInAnyOrder(pluginID("alpha"), pluginID("beta"));
+        assertThat(store.plugins().filter(plugin -> plugin.id().equals(pluginID("alpha")))).containsExactly(alpha);
+        assertThat(extractions()).isEqualTo(extractions);
+    }
+
+
+    @Test
+    void replacedPluginFilesAreEvictedAndTheirExtractionsRemoved(@TempDir Path downloads) throws IOException {
+        writePlugin(warehouse, "alpha", "1.0.0", false);
+        store = storeBuilder().build();
+        var alpha = store.plugins().findFirst().orElseThrow();
+        assertThat(extractions()).hasSize(1);
+
+        // the same version, now stored so it is read in place
+        Files.move(
+            writePlugin(downloads, "alpha", "1.0.0", true),
+            warehouse.resolve("alpha-1.0.0.zip"),
+            StandardCopyOption.REPLACE_EXISTING
+        );
+        store.installPluginFromZipFile(writePlugin(downloads, "beta", "1.0.0", true));
+        var replacedAlpha = store.plugins().filter(plugin -> plugin.id().equals(pluginID("alpha"))).findFirst();
+        assertThat(replacedAlpha).isPresent();
+        assertThat(replacedAlpha.get()).isNotSameAs(alpha);
+        assertThat(extractions()).isEmpty();
+        assertThat(describePlugins(store)).containsExactly("alpha 1.0.0", "beta 1.0.0");
+    }
+
+
+    @Test
+    void pluginsThatCannotBeFetchedKeepTheirPreviousFile() throws IOException {
+        writePlugin(warehouse, "alpha", "1.0.0", true);
+        Path beta = writePlugin(warehouse, "beta", "1.0.0", true);
+        Path newAlpha = pluginJar("alpha", "2.0.0");
+        var resolver = new ArtifactResolver() {
+            @Override
+            public Stream<ArtifactPath> resolveArtifacts(Collection<ArtifactID> artifacts) {
+                return artifacts.stream().map(artifact -> {
+                    if (artifact.pluginID().equals(pluginID("beta"))) {
+                        throw new PluginException("Artifact {} is not available", artifact);
+                    }
+                    return new ArtifactPath(artifact, newAlpha);
+                });
+            }
+            @Override
+            public Stream<ArtifactPath> resolvePlugins(Collection<PluginID> plugins) {
+                return plugins.stream().map(plugin -> new ArtifactPath(plugin.version(Version.of("2.0.0")), newAlpha));
+            }
+        };
+        store = storeBuilder().artifactResolver(resolver).build();
+        assertThat(describePlugins(store)).containsExactly("alpha 1.0.0", "beta 1.0.0");
+
+        store.updatePlugins();
+        assertThat(describePlugins(store)).containsExactly("alpha 2.0.0", "beta 1.0.0");
+        assertThat(beta).exists();
+        assertThat(warehouse.resolve("alpha-1.0.0.zip")).doesNotExist();
+        // no staged file is left behind
+        try (var files = Files.list(warehouse)) {
+            assertThat(files.map(file -> file.getFileName().toString()).filter(name -> name.startsWith(".update-")))
+                .isEmpty();
+        }
+    }
+
+
+    @Test
+    void defaultExecutorIsShutDownWhenTheStoreIsClosed() throws IOException, InterruptedException {
+        writePlugin(warehouse, "alpha", "1.0.0", true);
+        store = storeBuilder().build();
+        assertThat(describePlugins(store)).containsExactly("alpha 1.0.0");
+        store.close();
+        // platform threads are only used when virtual threads are not available
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pluginReaderThreadsAlive() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(pluginReaderThreadsAlive()).isFalse();
+        // plugins already read are still available
+        assertThat(store.plugins().map(Plugin::id)).containsExactly(pluginID("alpha"));
+    }
+
+
+    @Test
+    void extractedPluginsAreReusedByLaterStores() throws IOException {
+        writePlugin(warehouse, "alpha", "1.0.0", false);
+        store = storeBuilder().build();
+        assertThat(describePlugins(store)).containsExactly("alpha 1.0.0");
+        var extractions = extractions();
+        assertThat(extractions).hasSize(1);
+        store.close();
+
+        // a new extraction would replace the whole folder, including this file
+        Path sentinel = Files.createFile(extractions.get(0).resolve("sentinel"));
+        store = storeBuilder().build();
+        assertThat(describePlugins(store)).containsExactly("alpha 1.0.0");
+        assertThat(extractions()).isEqualTo(extractions);
+        assertThat(sentinel).exists();
+    }
+
+
+    @Test
+    void obsoleteAndAbandonedExtractionsAreRemoved() throws IOException {
+        writePlugin(warehouse, "alpha", "1.0.0", false);
+        Path extractionFolder = warehouse.resolve(".extracted");
+        Path obsolete = Files.createDirectories(extractionFolder.resolve("removed-1-1"));
+        Files.createFile(obsolete.resolve(".complete"));
+        Path abandoned = Files.createDirectories(extractionFolder.resolve("removed-1-1.tmp-1"));
+        Files.setLastModifiedTime(abandoned, FileTime.from(Instant.now().minus(Duration.ofHours(1))));
+        // it may belong to another process still extracting
+        Path inProgress = Files.createDirectories(extractionFolder.resolve("removed-1-1.tmp-2"));
+
+        store = storeBuilder().build();
+        assertThat(describePlugins(store)).containsExactly("alpha 1.0.0");
+        assertThat(obsolete).doesNotExist();
+        assertThat(abandoned).doesNotExist();
+        assertThat(inProgress).exists();
+        assertThat(extractions()).hasSize(1);
+    }
+
+
+    @Test
+    void modulesReadInPlaceHaveTheSameDescriptorsAsTheirJarFiles() throws IOException {
+        var jars = jarsOfEveryModuleKind();
+        PluginZipFile.create(warehouse.resolve("alpha-1.0.0.zip"), jars.get(0), jars.subList(1, jars.size()), true);
+        store = storeBuilder().build();
+
+        assertThat(extractions()).isEmpty();
+        assertSameDescriptors(pluginLayer("alpha"), jars);
+    }
+
+
+    @Test
+    void cataloguedModulesHaveTheSameDescriptorsAsTheirJarFiles() throws IOException {
+        var jars = jarsOfEveryModuleKind();
+        PluginZipFile.create(warehouse.resolve("alpha-1.0.0.zip"), jars.get(0), jars.subList(1, jars.size()), true);
+        // left by an interrupted save
+        Files.writeString(warehouse.resolve(".catalog123.tmp"), "incomplete catalog");
+        store = storeBuilder().build();
+        assertThat(describePlugins(store)).containsExactly("alpha 1.0.0");
+        store.close();
+        Path catalog = warehouse.resolve(".catalog");
+        var catalogTime = FileTime.from(Instant.now().minus(Duration.ofHours(1)));
+        Files.setLastModifiedTime(catalog, catalogTime);
+
+        store = storeBuilder().build();
+        assertSameDescriptors(pluginLayer("alpha"), jars);
+        assertThat(store.plugins().map(Plugin::id)).containsExactly(pluginID("alpha"));
+        // every plugin file was found in the catalog, so it was not saved again
+        assertThat(Files.getLastModifiedTime(catalog)).isEqualTo(catalogTime);
+    }
+
+
+    @Test
+    void classesAndResourcesAreLoadedInPlaceThroughNestedJarURLs() throws Exception {
+        String resourceName = "META-INF/saludo-año.txt";
+        Path jar = pluginJar("delta", "1.0.0", Map.of(resourceName, "¡hola!"));
+        PluginZipFile.create(warehouse.resolve("delta-1.0.0.zip"), jar, List.of(), true);
+        store = storeBuilder().build();
+
+        var layer = pluginLayer("delta");
+        assertThat(extractions()).isEmpty();
+        var loader = layer.findLoader("plugin.delta");
+        assertThat(loader.loadClass("plugin.delta.PluginExtension").getModule().getLayer()).isSameAs(layer);
+        URL resource = loader.getResource(resourceName);
+        assertThat(resource.getProtocol()).isEqualTo("jexten-nested");
+        try (var input = resource.openStream()) {
+            assertThat(new String(input.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("¡hola!");
+        }
+    }
+
+
+    @Test
+    void resourcesOfLoadedPluginsAreReadWithoutMappingThePluginFileAgain() throws Exception {
+        String resourceName = "META-INF/saludo.txt";
+        Path jar = pluginJar("delta", "1.0.0", Map.of(resourceName, "hola"));
+        Path zipFile = PluginZipFile.create(warehouse.resolve("delta-1.0.0.zip"), jar, List.of(), true).path();
+        store = storeBuilder().build();
+
+        var loader = pluginLayer("delta").findLoader("plugin.delta");
+        assertThat(loader.loadClass("plugin.delta.PluginExtension")).isNotNull();
+        URL resource = loader.getResource(resourceName);
+        // the file could not be mapped again, so the mapping of the module reader is used
+        Files.delete(zipFile);
+        try (var input = resource.openStream()) {
+            assertThat(new String(input.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("hola");
+        }
+    }
+
+
+    @Test
+    void malformedOffsetsOfPluginFilesAreReportedAsZipErrors() throws Exception {
+        Path zipFile = writePlugin(warehouse, "alpha", "1.0.0", true);
+        String jarName;
+        try (var zip = new ZipFile(zipFile.toFile())) {
+            jarName = zip.stream().map(ZipEntry::getName).filter(name -> name.endsWith(".jar")).findFirst().orElseThrow();
+        }
+        byte[] content = Files.readAllBytes(zipFile);
+        var buffer = ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN);
+        int end = content.length - 22;
+        while (buffer.getInt(end) != 0x06054b50) {
+            end--;
+        }
+        int centralDirectory = buffer.getInt(end + 16);
+
+        // the central directory starts beyond the end of the file
+        var beyondCentralDirectory = ByteBuffer.wrap(content.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        beyondCentralDirectory.putInt(end + 16, content.length - 2);
+        // every entry points to a local header beyond the end of the file
+        var beyondLocalHeaders = ByteBuffer.wrap(content.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        for (int position = centralDirectory; position < end; ) {
+            beyondLocalHeaders.putInt(position + 42, content.length - 2);
+            position += 46
+                + Short.toUnsignedInt(buffer.getShort(position + 28))
+                + Short.toUnsignedInt(buffer.getShort(position + 30))
+                + Short.toUnsignedInt(buffer.getShort(position + 32));
+        }
+
+        for (var malformed : List.of(beyondCentralDirectory, beyondLocalHeaders)) {
+            Path malformedFile = Files.write(Files.createTempFile(warehouse, "malformed", ".zip"), malformed.array());
+            URL resource = new URI(
+                "jexten-nested",
+                malformedFile.toUri() + "!/" + jarName + "!/module-info.class",
+                null
+            ).toURL();
+            assertThatThrownBy(resource::openStream).isInstanceOf(ZipException.class);
+        }
+    }
+
+
+    @Test
+    void zip64PluginFilesAreExtractedInsteadOfReadInPlace() throws IOException {
+        convertToZip64(writePlugin(warehouse, "alpha", "1.0.0", true));
+        store = storeBuilder().build();
+        assertThat(describePlugins(store)).containsExactly("alpha 1.0.0");
+        assertThat(extractions()).hasSize(1);
+    }
+
+
+    /*
+     * The main jar of a plugin along with explicit, open, automatic and multi-release
+     * modules using every kind of module directive
+     */
+    private static List<Path> jarsOfEveryModuleKind() throws IOException {
+        var automaticManifest = new Manifest();
+        automaticManifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        automaticManifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, "auto.lib.Task");
+        var namedManifest = new Manifest();
+        namedManifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        namedManifest.getMainAttributes().putValue("Automatic-Module-Name", "named.auto");
+        return List.of(
+            pluginJar("alpha", "1.0.0"),
+            compileModule("full", "full.module", Map.of(
+                "module-info.java", String.join("\n",
+                    "module full.module {",
+                    "    requires transitive jexten;",
+                    "    requires static java.sql;",
+                    "    exports full.api;",
+                    "    exports full.spi to jexten;",
+                    "    opens full.impl to jexten;",
+                    "    uses full.spi.Service;",
+                    "    provides full.spi.Service with full.impl.ServiceImpl;",
+                    "}"
+                ),
+                "full/api/Api.java", "package full.api; public interface Api { }",
+                "full/spi/Service.java", "package full.spi; public interface Service { }",
+                "full/impl/ServiceImpl.java", "package full.impl; public class ServiceImpl implements full.spi.Service { }"
+            ), null),
+            compileModule("auto-lib-2.1", "auto.lib", Map.of(
+                "auto/lib/Task.java", "package auto.lib; public class Task implements Runnable { public void run() { } }",
+                "auto/lib/data/values.txt", "not a class package",
+                "META-INF/services/java.lang.Runnable", "# providers\nauto.lib.Task # the task\n"
+            ), automaticManifest),
+            compileModule("renamed", "named.auto", Map.of(
+                "named/auto/Thing.java", "package named.auto; public class Thing { }"
+            ), namedManifest),
+            multiReleaseJar(compileModule("multi", "multi.release", Map.of(
+                "module-info.java", "open module multi.release { exports multi.release; uses java.lang.Runnable; }",
+                "multi/release/Api.java", "package multi.release; public interface Api { }",
+                "multi/release/internal/Impl.java", "package multi.release.internal; class Impl implements multi.release.Api { }"
+            ), null), "multi-release")
+        );
+    }
+
+
+    private static void assertSameDescriptors(ModuleLayer layer, List<Path> jars) {
+        for (Path jar : jars) {
+            var expected = ModuleFinder.of(jar).findAll().iterator().next().descriptor();
+            assertThat(layer.findModule(expected.name()).map(Module::getDescriptor)).contains(expected);
+        }
+    }
+
+
+    private PluginStoreBuilder storeBuilder() {
+        return PluginStore.builder()
+            .module(ITPluginStore.class.getModule())
+            .warehousePath(warehouse);
+    }
+
+
+    private ModuleLayer pluginLayer(String name) {
+        return store.moduleLayersByPlugin().entrySet().stream()
+            .filter(entry -> entry.getKey().id().equals(pluginID(name)))
+            .map(Map.Entry::getValue)
+            .findFirst()
+            .orElseThrow();
+    }
+
+
+    private List<Path> extractions() throws IOException {
+        if (Files.notExists(warehouse.resolve(".extracted"))) {
+            return List.of();
+        }
+        try (var folders = Files.list(warehouse.resolve(".extracted"))) {
+            return folders.filter(folder -> !folder.getFileName().toString().contains(".tmp-")).sorted().toList();
+        }
+    }
+
+
+    private static boolean pluginReaderThreadsAlive() {
+        return Thread.getAllStackTraces().keySet().stream()
+            .anyMatch(thread -> thread.getName().equals("jexten-plugin-reader"));
+    }
+
+
+    private static List<String> describePlugins(ModuleLayerProvider layerProvider) {
+        return ExtensionManager.create(layerProvider)
+            .getExtensions(PluginExtensionPoint.class)
+            .map(PluginExtensionPoint::describe)
+            .sorted()
+            .toList();
+    }
+
+}
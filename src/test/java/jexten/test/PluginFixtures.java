@@ -0,0 +1,399 @@
+package jexten.test;
+
+import java.io.*;
+import java.lang.module.*;
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.jar.*;
+import java.util.stream.*;
+import javax.tools.ToolProvider;
+
+import jexten.plugin.*;
+import jexten.test.plugin.PluginExtensionPoint;
+
+/**
+ * Plugins compiled at test time, each one containing a single module named
+ * <tt>plugin.&lt;name&gt;</tt> with an extension of {@link PluginExtensionPoint}
+ * that describes itself as <tt>&lt;name&gt; &lt;version&gt;</tt>.
+ * <p>
+ * Compiled jars are reused along the whole test execution.
+ */
+final class PluginFixtures {
+
+    static final String GROUP = "jexten.test";
+
+    private static final Map<String, Path> compiledJars = new HashMap<>();
+    private static Path compilationFolder;
+
+
+    private PluginFixtures() {
+        /* avoid instantiation */
+    }
+
+
+    static PluginID pluginID(String name) {
+        return PluginID.of(GROUP + ":" + name);
+    }
+
+
+    /**
+     * Write a plugin file in the given folder, with its jar either stored (so it
+     * can be read in place) or compressed (so it must be extracted)
+     */
+    static Path writePlugin(Path folder, String name, String version, boolean stored) throws IOException {
+        Files.createDirectories(folder);
+        Path zipFile = folder.resolve(name + "-" + version + ".zip");
+        PluginZipFile.create(zipFile, pluginJar(name, version), List.of(), stored);
+        return zipFile;
+    }
+
+
+    /**
+     * Write a plugin file in the given folder, hosted by another plugin
+     * @see #hostedPluginJar(String, String, String)
+     */
+    static Path writeHostedPlugin(Path folder, String name, String version, String host) throws IOException {
+        Files.createDirectories(folder);
+        Path zipFile = folder.resolve(name + "-" + version + ".zip");
+        PluginZipFile.create(zipFile, hostedPluginJar(name, version, host), List.of(), true);
+        return zipFile;
+    }
+
+
+    /**
+     * Write a plugin file in the given folder, whose module contains the same classes
+     * as a regular plugin but provides no extension
+     */
+    static Path writeIdlePlugin(Path folder, String name, String version) throws IOException {
+        Files.createDirectories(folder);
+        Path zipFile = folder.resolve(name + "-" + version + ".zip");
+        Path jar = compileModule(
+            name + "-" + version + "-idle",
+            "plugin." + name,
+            idlePluginSources(name, version),
+            pluginManifest(name, version)
+        );
+        PluginZipFile.create(zipFile, jar, List.of(), true);
+        return zipFile;
+    }
+
+
+    /**
+     * @return The jar of the given plugin, with the plugin manifest attributes
+     */
+    static synchronized Path pluginJar(String name, String version) throws IOException {
+        String key = name + "-" + version;
+        Path jar = compiledJars.get(key);
+        if (jar == null) {
+            jar = compileModule(key, "plugin." + name, pluginSources(name, version), pluginManifest(name, version));
+            compiledJars.put(key, jar);
+        }
+        return jar;
+    }
+
+
+    /**
+     * @return The jar of a plugin hosted by the version 1.0.0 of another one, so its
+     *         parent module is the module of the host and its extension describes the
+     *         host as well
+     */
+    static synchronized Path hostedPluginJar(String name, String version, String host) throws IOException {
+        String key = name + "-" + version + "-on-" + host;
+        Path jar = compiledJars.get(key);
+        if (jar == null) {
+            String hostModule = "plugin." + host;
+            Map<String,String> sources = new HashMap<>(pluginSources(name, version));
+            sources.computeIfPresent("module-info.java", (file, source) -> source.replace(
+                "requires jexten;",
+                "requires jexten;\n    requires " + hostModule + ";"
+            ));
+            sources.computeIfPresent("plugin/" + name + "/PluginExtension.java", (file, source) -> source.replace(
+                "\"" + name + " " + version + "\"",
+                "\"" + name + " " + version + " on \" + new " + hostModule + ".PluginExtension().describe()"
+            ));
+            var manifest = pluginManifest(name, version);
+            manifest.getMainAttributes().putValue(PluginManifest.PLUGIN_PARENT_MODULE, hostModule);
+            jar = compileModule(key, "plugin." + name, sources, manifest, pluginJar(host, "1.0.0"));
+            compiledJars.put(key, jar);
+        }
+        return jar;
+    }
+
+
+    /**
+     * @return The jar of a plugin whose extension has {@link jexten.Scope#GLOBAL} scope
+     */
+    static synchronized Path globalPluginJar(String name) throws IOException {
+        String key = name + "-global";
+        Path jar = compiledJars.get(key);
+        if (jar == null) {
+            Map<String,String> sources = new HashMap<>(pluginSources(name, "1.0.0"));
+            sources.computeIfPresent("plugin/" + name + "/PluginExtension.java", (file, source) -> source.replace(
+                "@jexten.Extension\n",
+                "@jexten.Extension(scope = jexten.Scope.GLOBAL)\n"
+            ));
+            jar = compileModule(key, "plugin." + name, sources, pluginManifest(name, "1.0.0"));
+            compiledJars.put(key, jar);
+        }
+        return jar;
+    }
+
+
+    /**
+     * @return The jar of a plugin whose module declares to provide {@link PluginExtensionPoint}
+     *         with a class that does not implement it, which could not be compiled as is
+     */
+    static synchronized Path misdeclaredPluginJar(String name) throws IOException {
+        String key = name + "-misdeclared";
+        Path jar = compiledJars.get(key);
+        if (jar == null) {
+            Map<String,String> sources = new HashMap<>(idlePluginSources(name, "1.0.0"));
+            sources.computeIfPresent("plugin/" + name + "/PluginExtension.java", (file, source) -> source.replace(
+                " implements " + PluginExtensionPoint.class.getName(),
+                ""
+            ));
+            Path classesJar = compileModule(key + "-classes", "plugin." + name, sources, null);
+            byte[] moduleInfo;
+            try (var declaringJar = new JarFile(pluginJar(name, "1.0.0").toFile())) {
+                moduleInfo = declaringJar.getInputStream(declaringJar.getEntry("module-info.class")).readAllBytes();
+            }
+            jar = classesJar.resolveSibling(key + ".jar");
+            try (
+                var input = new JarInputStream(Files.newInputStream(classesJar));
+                var output = new JarOutputStream(Files.newOutputStream(jar))
+            ) {
+                for (var entry = input.getNextJarEntry(); entry != null; entry = input.getNextJarEntry()) {
+                    output.putNextEntry(new JarEntry(entry.getName()));
+                    if (entry.getName().equals("module-info.class")) {
+                        output.write(moduleInfo);
+                    } else {
+                        input.transferTo(output);
+                    }
+                    output.closeEntry();
+                }
+            }
+            compiledJars.put(key, jar);
+        }
+        return jar;
+    }
+
+
+    /**
+     * @return A new jar of the given plugin, including the given resources
+     */
+    static Path pluginJar(String name, String version, Map<String,String> resources) throws IOException {
+        Map<String,String> sources = new HashMap<>(pluginSources(name, version));
+        sources.putAll(resources);
+        return compileModule(name + "-" + version + "-resources", "plugin." + name, sources, pluginManifest(name, version));
+    }
+
+
+    /**
+     * Package the given modular jar as a multi-release jar, declaring the module
+     * only for Java 9 and later
+     */
+    static Path multiReleaseJar(Path jar, String jarName) throws IOException {
+        Path multiReleaseJar = jar.resolveSibling(jarName + ".jar");
+        var manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MULTI_RELEASE, "true");
+        try (
+            var input = new JarInputStream(Files.newInputStream(jar));
+            var output = new JarOutputStream(Files.newOutputStream(multiReleaseJar), manifest)
+        ) {
+            for (var entry = input.getNextJarEntry(); entry != null; entry = input.getNextJarEntry()) {
+                String name = entry.getName().equals("module-info.class") ?
+                    "META-INF/versions/9/module-info.class" :
+                    entry.getName();
+                output.putNextEntry(new JarEntry(name));
+                input.transferTo(output);
+                output.closeEntry();
+            }
+        }
+        return multiReleaseJar;
+    }
+
+
+    /**
+     * Rewrite the given zip file as a ZIP64 archive, adding the ZIP64 end records
+     * although the regular ones are enough, as some tools do
+     */
+    static void convertToZip64(Path zipFile) throws IOException {
+        var bytes = ByteBuffer.wrap(Files.readAllBytes(zipFile)).order(ByteOrder.LITTLE_ENDIAN);
+        // plugin files have no comment
+        int end = bytes.limit() - 22;
+        if (bytes.getInt(end) != 0x06054b50) {
+            throw new IOException("Unexpected zip file end in " + zipFile);
+        }
+        long entries = Short.toUnsignedLong(bytes.getShort(end + 10));
+        long centralSize = Integer.toUnsignedLong(bytes.getInt(end + 12));
+        long centralOffset = Integer.toUnsignedLong(bytes.getInt(end + 16));
+        long zip64End = centralOffset + centralSize;
+        var zip64 = ByteBuffer.allocate(56 + 20).order(ByteOrder.LITTLE_ENDIAN)
+            .putInt(0x06064b50).putLong(44).putShort((short) 45).putShort((short) 45)
+            .putInt(0).putInt(0).putLong(entries).putLong(entries).putLong(centralSize).putLong(centralOffset)
+            .putInt(0x07064b50).putInt(0).putLong(zip64End).putInt(1);
+        try (var output = Files.newOutputStream(zipFile)) {
+            output.write(bytes.array(), 0, (int) zip64End);
+            output.write(zip64.array());
+            output.write(bytes.array(), (int) zip64End, bytes.limit() - (int) zip64End);
+        }
+    }
+
+
+    /**
+     * Define a new layer with the modules of the given jars, all of them sharing the
+     * same class loader
+     */
+    static ModuleLayer defineLayer(ModuleLayer parent, Path... jars) {
+        var finder = ModuleFinder.of(jars);
+        var moduleNames = finder.findAll().stream()
+            .map(module -> module.descriptor().name())
+            .collect(Collectors.toSet());
+        var configuration = parent.configuration().resolve(finder, ModuleFinder.of(), moduleNames);
+        return parent.defineModulesWithOneLoader(configuration, ClassLoader.getSystemClassLoader());
+    }
+
+
+    /**
+     * Compile a module against the modules of the boot layer and package it as a jar
+     * @param sources      The source files, and any other resource, keyed by relative path
+     * @param manifest     The jar manifest, or <code>null</code> if not required
+     * @param dependencies Other jars required to compile the module
+     */
+    static synchronized Path compileModule(
+        String jarName,
+        String moduleName,
+        Map<String,String> sources,
+        Manifest manifest,
+        Path... dependencies
+    ) throws IOException {
+        if (compilationFolder == null) {
+            compilationFolder = Files.createTempDirectory("jexten-test-plugins");
+        }
+        Path folder = Files.createTempDirectory(compilationFolder, moduleName);
+        Path sourceFolder = folder.resolve("src");
+        Path classFolder = folder.resolve("classes");
+        List<String> arguments = new ArrayList<>(List.of(
+            "-proc:none",
+            "-encoding", "UTF-8",
+            "--module-path", Stream.concat(
+                Stream.of(bootModulePath()),
+                Stream.of(dependencies).map(Path::toString)
+            ).collect(Collectors.joining(File.pathSeparator)),
+            "-d", classFolder.toString()
+        ));
+        Map<String,String> resources = new TreeMap<>();
+        for (var source : sources.entrySet()) {
+            if (!source.getKey().endsWith(".java")) {
+                // resources are written directly to the jar, so their names do not depend on the file system
+                resources.put(source.getKey(), source.getValue());
+                continue;
+            }
+            Path file = sourceFolder.resolve(source.getKey());
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, source.getValue(), StandardCharsets.UTF_8);
+            arguments.add(file.toString());
+        }
+        var errors = new ByteArrayOutputStream();
+        int result = ToolProvider.getSystemJavaCompiler()
+            .run(null, errors, errors, arguments.toArray(String[]::new));
+        if (result != 0) {
+            throw new IllegalStateException("Cannot compile module " + moduleName + ":\n" + errors);
+        }
+        Path jar = compilationFolder.resolve(jarName + ".jar");
+        writeJar(jar, classFolder, resources, manifest);
+        return jar;
+    }
+
+
+    private static Map<String,String> pluginSources(String name, String version) {
+        String module = "plugin." + name;
+        return Map.of(
+            "module-info.java",
+            "module " + module + " {\n" +
+            "    requires jexten;\n" +
+            "    requires jexten.test;\n" +
+            "    exports " + module + ";\n" +
+            "    provides " + PluginExtensionPoint.class.getName() + " with " + module + ".PluginExtension;\n" +
+            "}\n",
+            module.replace('.', '/') + "/PluginExtension.java",
+            "package " + module + ";\n" +
+            "@jexten.Extension\n" +
+            "public class PluginExtension implements " + PluginExtensionPoint.class.getName() + " {\n" +
+            "    public String describe() {\n" +
+            "        return \"" + name + " " + version + "\";\n" +
+            "    }\n" +
+            "}\n"
+        );
+    }
+
+
+    private static Map<String,String> idlePluginSources(String name, String version) {
+        Map<String,String> sources = new HashMap<>(pluginSources(name, version));
+        sources.computeIfPresent("module-info.java", (file, source) -> source.lines()
+            .filter(line -> !line.contains("provides "))
+            .collect(Collectors.joining("\n"))
+        );
+        return sources;
+    }
+
+
+    static Manifest pluginManifest(String name, String version) {
+        String application = PluginFixtures.class.getModule().getName();
+        var manifest = new Manifest();
+        var attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.putValue(PluginManifest.PLUGIN_ID, pluginID(name).toString());
+        attributes.putValue(PluginManifest.PLUGIN_VERSION, version);
+        attributes.putValue(PluginManifest.PLUGIN_MODULE, "plugin." + name);
+        attributes.putValue(PluginManifest.PLUGIN_APPLICATION_MODULE, application);
+        attributes.putValue(PluginManifest.PLUGIN_PARENT_MODULE, application);
+        return manifest;
+    }
+
+
+    /*
+     * The modules of the boot layer, including this test module, are the
+     * ones available to the plugins
+     */
+    private static String bootModulePath() {
+        return ModuleLayer.boot().configuration().modules().stream()
+            .map(ResolvedModule::reference)
+            .map(ModuleReference::location)
+            .flatMap(Optional::stream)
+            .filter(location -> location.getScheme().equals("file"))
+            .map(location -> Path.of(location).toString())
+            .distinct()
+            .collect(Collectors.joining(File.pathSeparator));
+    }
+
+
+    private static void writeJar(
+        Path jar,
+        Path classFolder,
+        Map<String,String> resources,
+        Manifest manifest
+    ) throws IOException {
+        try (
+            var output = manifest == null ?
+                new JarOutputStream(Files.newOutputStream(jar)) :
+                new JarOutputStream(Files.newOutputStream(jar), manifest);
+            Stream<Path> files = Files.walk(classFolder)
+        ) {
+            for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                output.putNextEntry(new JarEntry(classFolder.relativize(file).toString().replace('\\', '/')));
+                Files.copy(file, output);
+                output.closeEntry();
+            }
+            for (var resource : resources.entrySet()) {
+                output.putNextEntry(new JarEntry(resource.getKey()));
+                output.write(resource.getValue().getBytes(StandardCharsets.UTF_8));
+                output.closeEntry();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,20 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.test.ext;
+
+import java.util.List;
+
+import jexten.*;
+
+@Extension(scope = Scope.TRANSIENT)
+public class DerivedInjectedExtension extends InjectedFieldExtension implements DerivedExtensionPoint {
+
+    @Inject
+    private List<InjectableExtensionPoint> ownList;
+
+
+    public List<InjectableExtensionPoint> ownList() {
+        return ownList;
+    }
+
+}
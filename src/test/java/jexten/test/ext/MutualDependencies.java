@@ -0,0 +1,39 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.test.ext;
+
+import java.util.Optional;
+import java.util.concurrent.*;
+import jexten.ExtensionManager;
+
+/**
+ * Shared state of the extensions requesting each other while being constructed.
+ * The first constructions wait for each other, so both are in progress at the
+ * same time.
+ */
+public final class MutualDependencies {
+
+	private static volatile ExtensionManager extensionManager;
+	private static volatile CountDownLatch constructionsStarted = new CountDownLatch(0);
+
+
+	private MutualDependencies() { }
+
+
+	public static void reset(ExtensionManager extensionManager, int concurrentConstructions) {
+		MutualDependencies.extensionManager = extensionManager;
+		MutualDependencies.constructionsStarted = new CountDownLatch(concurrentConstructions);
+	}
+
+
+	static Optional<MutualExtensionPoint> request(Class<? extends MutualExtensionPoint> type) {
+		constructionsStarted.countDown();
+		try {
+			constructionsStarted.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return extensionManager.getExtension(MutualExtensionPoint.class, it -> it == type);
+	}
+
+}
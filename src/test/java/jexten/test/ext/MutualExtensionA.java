@@ -0,0 +1,22 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.test.ext;
+
+import java.util.Optional;
+import jexten.*;
+
+@Extension(scope = Scope.GLOBAL)
+public class MutualExtensionA implements MutualExtensionPoint {
+
+	private final Optional<MutualExtensionPoint> dependency;
+
+	public MutualExtensionA() {
+		this.dependency = MutualDependencies.request(MutualExtensionB.class);
+	}
+
+	@Override
+	public Optional<MutualExtensionPoint> dependency() {
+		return dependency;
+	}
+
+}
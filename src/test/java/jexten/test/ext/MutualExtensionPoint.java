@@ -0,0 +1,13 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.test.ext;
+
+import java.util.Optional;
+import jexten.ExtensionPoint;
+
+@ExtensionPoint
+public interface MutualExtensionPoint {
+
+	Optional<MutualExtensionPoint> dependency();
+
+}
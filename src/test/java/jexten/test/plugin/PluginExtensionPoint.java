@@ -0,0 +1,15 @@
+// Copyright  (c) 2022 -  Luis Iñesta Gelabert  <luiinge@gmail.com>
+
+package jexten.test.plugin;
+
+import jexten.ExtensionPoint;
+
+/**
+ * Extension point implemented by the plugins compiled by the tests
+ */
+@ExtensionPoint
+public interface PluginExtensionPoint {
+
+	String describe();
+
+}
@@ -7,11 +7,15 @@ module jexten.test {
     requires org.assertj.core;
     requires org.slf4j;
     requires org.slf4j.simple;
+    requires java.compiler;
 
     exports jexten.test to jexten, org.junit.platform.commons;
     exports jexten.test.ext to jexten;
     opens jexten.test.ext to jexten;
     opens jexten.test to org.junit.platform.commons;
+    // plugins compiled by the tests implement the extension points of this package
+    exports jexten.test.plugin;
+    opens jexten.test.plugin to jexten;
 
     provides SimpleExtensionPoint with
         SimpleExtension,
@@ -38,6 +42,10 @@ module jexten.test {
 
     provides LoopedExtensionPoint with InjectedLoopExtension;
 
+    provides MutualExtensionPoint with MutualExtensionA, MutualExtensionB;
+
+    provides DerivedExtensionPoint with DerivedInjectedExtension;
+
 
 
 }
\ No newline at end of file